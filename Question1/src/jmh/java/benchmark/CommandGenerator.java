@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/*
+ * Generates synthetic command streams in time order. createRatio is the share
+ * of create commands, idCardinality the number of distinct token IDs drawn from
+ * & timeStep the largest gap between two consecutive command times. The same
+ * seed always yields the same commands.
+ */
+final class CommandGenerator {
+
+	final int[] types;
+	final int[] ids;
+	final int[] times;
+	final int expiryLimit;
+
+	CommandGenerator(int commands, double createRatio, int idCardinality, int expiryLimit, int timeStep, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		this.types = new int[commands];
+		this.ids = new int[commands];
+		this.times = new int[commands];
+		this.expiryLimit = expiryLimit;
+		int time = 1;
+		for (int i = 0; i < commands; i++) {
+			time += random.nextInt(timeStep + 1);
+			types[i] = random.nextDouble() < createRatio ? 0 : 1;
+			ids[i] = 1 + random.nextInt(idCardinality);
+			times[i] = time;
+		}
+	}
+
+	int size() {
+		return types.length;
+	}
+
+	// Copies the commands into a new CommandBuffer
+	Object toBuffer() throws Throwable {
+		Object buffer = TokenEngine.newBuffer(types.length);
+		for (int i = 0; i < types.length; i++)
+			TokenEngine.accept(buffer, types[i], ids[i], times[i]);
+		return buffer;
+	}
+
+	// Writes the commands in the text format of example_input.txt
+	void writeText(Path file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+			writeLine(out, Integer.toString(expiryLimit));
+			writeLine(out, Integer.toString(types.length));
+			writeLine(out, "3");
+			for (int i = 0; i < types.length; i++)
+				writeLine(out, types[i] + " " + ids[i] + " " + times[i]);
+		}
+	}
+
+	private static void writeLine(OutputStream out, String line) throws IOException {
+		out.write(line.getBytes(StandardCharsets.US_ASCII));
+		out.write('\n');
+	}
+}
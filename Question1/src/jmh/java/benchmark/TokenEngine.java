@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+
+/*
+ * Bridge to the token engine classes, which live in the unnamed package and
+ * so cannot be referenced from benchmark code - JMH requires benchmarks to have
+ * a package. Every engine entry point is looked up once into a static final
+ * MethodHandle, which the JIT treats as a constant and inlines, so calls through
+ * the bridge cost the same as direct calls.
+ */
+final class TokenEngine {
+
+	private static final MethodHandle NEW_EXECUTOR;
+	private static final MethodHandle NEW_DEFERRING_EXECUTOR;
+	private static final MethodHandle ACCEPT;
+	private static final MethodHandle GET_ACTIVE_TOKENS;
+	private static final MethodHandle NEW_BUFFER;
+	private static final MethodHandle REPLAY;
+	private static final MethodHandle OPEN_READER;
+	private static final MethodHandle READ_COMMANDS;
+	private static final MethodHandle GET_EXPIRY_LIMIT;
+	private static final MethodHandle REPLAY_PARALLEL;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> sink = Class.forName("CommandSink");
+			Class<?> manager = Class.forName("TokenManager");
+			Class<?> executor = Class.forName("CommandExecutor");
+			Class<?> buffer = Class.forName("CommandBuffer");
+			Class<?> reader = Class.forName("MappedCommandReader");
+			Class<?> parallel = Class.forName("ParallelCommandReplay");
+
+			MethodHandle newManager = lookup.findConstructor(manager, MethodType.methodType(void.class, int.class));
+			MethodHandle newExecutor = lookup.findConstructor(executor, MethodType.methodType(void.class, manager));
+			NEW_EXECUTOR = erase(MethodHandles.filterArguments(newExecutor, 0, newManager));
+			MethodHandle newDeferringExecutor = lookup.findConstructor(executor,
+					MethodType.methodType(void.class, manager, boolean.class));
+			NEW_DEFERRING_EXECUTOR = erase(MethodHandles.filterArguments(newDeferringExecutor, 0, newManager));
+			ACCEPT = erase(lookup.findVirtual(sink, "accept",
+					MethodType.methodType(void.class, int.class, int.class, int.class)));
+			GET_ACTIVE_TOKENS = erase(
+					lookup.findVirtual(executor, "getActiveTokens", MethodType.methodType(int.class, int.class)));
+			NEW_BUFFER = erase(lookup.findConstructor(buffer, MethodType.methodType(void.class, int.class)));
+			REPLAY = erase(lookup.findVirtual(buffer, "replay", MethodType.methodType(void.class, sink)));
+			OPEN_READER = erase(lookup.findStatic(reader, "open", MethodType.methodType(reader, Path.class)));
+			READ_COMMANDS = erase(lookup.findVirtual(reader, "readCommands", MethodType.methodType(int.class, sink)));
+			GET_EXPIRY_LIMIT = erase(lookup.findVirtual(reader, "getExpiryLimit", MethodType.methodType(int.class)));
+			REPLAY_PARALLEL = lookup.findStatic(parallel, "numberOfTokens",
+					MethodType.methodType(int.class, int.class, int[].class, int[].class, int[].class));
+		} catch (ReflectiveOperationException ex) {
+			throw new ExceptionInInitializerError(ex);
+		}
+	}
+
+	private TokenEngine() {
+	}
+
+	// Replaces engine types in the handle type with Object
+	private static MethodHandle erase(MethodHandle handle) {
+		MethodType type = handle.type();
+		for (int i = 0; i < type.parameterCount(); i++)
+			if (!type.parameterType(i).isPrimitive() && type.parameterType(i) != Path.class)
+				type = type.changeParameterType(i, Object.class);
+		if (!type.returnType().isPrimitive())
+			type = type.changeReturnType(Object.class);
+		return handle.asType(type);
+	}
+
+	// new CommandExecutor(new TokenManager(expiryLimit))
+	static Object newExecutor(int expiryLimit) throws Throwable {
+		return (Object) NEW_EXECUTOR.invokeExact(expiryLimit);
+	}
+
+	// new CommandExecutor(new TokenManager(expiryLimit), evictOnAccept)
+	static Object newExecutor(int expiryLimit, boolean evictOnAccept) throws Throwable {
+		return (Object) NEW_DEFERRING_EXECUTOR.invokeExact(expiryLimit, evictOnAccept);
+	}
+
+	// sink.accept(type, id, time)
+	static void accept(Object sink, int type, int id, int time) throws Throwable {
+		ACCEPT.invokeExact(sink, type, id, time);
+	}
+
+	// executor.getActiveTokens(time)
+	static int getActiveTokens(Object executor, int time) throws Throwable {
+		return (int) GET_ACTIVE_TOKENS.invokeExact(executor, time);
+	}
+
+	// new CommandBuffer(expectedCommands)
+	static Object newBuffer(int expectedCommands) throws Throwable {
+		return (Object) NEW_BUFFER.invokeExact(expectedCommands);
+	}
+
+	// buffer.replay(sink)
+	static void replay(Object buffer, Object sink) throws Throwable {
+		REPLAY.invokeExact(buffer, sink);
+	}
+
+	// MappedCommandReader.open(file)
+	static Object openReader(Path file) throws Throwable {
+		return (Object) OPEN_READER.invokeExact(file);
+	}
+
+	// reader.readCommands(sink)
+	static int readCommands(Object reader, Object sink) throws Throwable {
+		return (int) READ_COMMANDS.invokeExact(reader, sink);
+	}
+
+	// reader.getExpiryLimit()
+	static int getExpiryLimit(Object reader) throws Throwable {
+		return (int) GET_EXPIRY_LIMIT.invokeExact(reader);
+	}
+
+	// ParallelCommandReplay.numberOfTokens(expiryLimit, types, ids, times)
+	static int replayParallel(int expiryLimit, int[] types, int[] ids, int[] times) throws Throwable {
+		return (int) REPLAY_PARALLEL.invokeExact(expiryLimit, types, ids, times);
+	}
+}
@@ -0,0 +1,129 @@
+package benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Benchmarks the stages of the token engine separately - parsing a text command
+ * file, executing the commands, serially or on the fork/join pool, & computing
+ * the final active count. Scale & shape of the workload are set through the @Param fields, e.g.
+ * java -jar target/benchmarks.jar -p commands=10000000 -p createRatio=0.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class TokenEngineBenchmark {
+
+	@Param({ "1000", "100000", "10000000" })
+	public int commands;
+
+	// Share of create commands
+	@Param({ "0.2", "0.5" })
+	public double createRatio;
+
+	// Distinct token IDs as a share of the number of commands
+	@Param({ "0.1", "1.0" })
+	public double idCardinality;
+
+	@Param({ "100", "100000" })
+	public int expiryLimit;
+
+	private Path inputFile;
+	private Object buffer;
+	private CommandGenerator generator;
+
+	@Setup(Level.Trial)
+	public void generate() throws Throwable {
+		generator = new CommandGenerator(commands, createRatio,
+				Math.max(1, (int) (commands * idCardinality)), expiryLimit, 2, 42);
+		inputFile = Files.createTempFile("commands", ".txt");
+		generator.writeText(inputFile);
+		buffer = generator.toBuffer();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteInput() throws Exception {
+		Files.deleteIfExists(inputFile);
+	}
+
+	// Parses the memory-mapped text file into a columnar buffer
+	@Benchmark
+	public Object parse() throws Throwable {
+		Object reader = TokenEngine.openReader(inputFile);
+		Object parsed = TokenEngine.newBuffer(commands);
+		TokenEngine.readCommands(reader, parsed);
+		return parsed;
+	}
+
+	// Executes all commands against a new TokenManager
+	@Benchmark
+	public Object execute() throws Throwable {
+		Object executor = TokenEngine.newExecutor(expiryLimit);
+		TokenEngine.replay(buffer, executor);
+		return executor;
+	}
+
+	// Executes all commands & computes the final count on the common fork/join pool
+	@Benchmark
+	public int executeParallel() throws Throwable {
+		return TokenEngine.replayParallel(expiryLimit, generator.types, generator.ids, generator.times);
+	}
+
+	/*
+	 * Computes the active count at the maximum time, expiring the tokens still
+	 * due. Computing it consumes that work, so every measured call is a single
+	 * shot on an executor prepared before the iteration.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 10)
+	@Measurement(iterations = 20)
+	public int count(ExecutedCommands executed) throws Throwable {
+		return TokenEngine.getActiveTokens(executed.executor, executed.maxTime);
+	}
+
+	/*
+	 * Executor that has run every command stamped before the maximum time. With
+	 * evictOnAccept the count only expires the tokens due since the previous
+	 * command, as at the end of a batch run. Without it eviction was deferred, as
+	 * in TokenService between sweeps, & the count expires the whole backlog.
+	 */
+	@State(Scope.Thread)
+	public static class ExecutedCommands {
+
+		@Param({ "true", "false" })
+		public boolean evictOnAccept;
+
+		Object executor;
+		int maxTime;
+
+		@Setup(Level.Iteration)
+		public void execute(TokenEngineBenchmark benchmark) throws Throwable {
+			CommandGenerator generator = benchmark.generator;
+			int[] times = generator.times;
+			maxTime = times[times.length - 1];
+			executor = TokenEngine.newExecutor(benchmark.expiryLimit, evictOnAccept);
+			for (int i = 0; i < times.length && times[i] < maxTime; i++)
+				TokenEngine.accept(executor, generator.types[i], generator.ids[i], times[i]);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/*
+ * Offline engine answering "how many tokens are active at time T" for many
+ * query times over one command log. Commands are replayed once under the same
+ * rules as CommandExecutor to find the interval each token was active - from
+ * its creation to its final expiry, since an accepted reset always extends an
+ * unexpired token. Query times are then answered in a single sweep over the
+ * sorted interval ends, in O((n + q) log n) instead of one replay per query.
+ */
+public class ActiveTokenTimeline implements CommandSink {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final int expiryLimit;
+	// Maps token ID to the index of its interval
+	private final TokenStore intervalIndex = new TokenStore();
+	private int[] createTimes = new int[DEFAULT_CAPACITY];
+	private int[] expiryTimes = new int[DEFAULT_CAPACITY];
+	private int intervals;
+	private int maxTime;
+
+	public ActiveTokenTimeline(int expiryLimit) {
+		this.expiryLimit = expiryLimit;
+	}
+
+	/*
+	 * Records a single command. Commands out of time order & invalid request types
+	 * are ignored, as in CommandExecutor.
+	 */
+	@Override
+	public void accept(int type, int id, int time) {
+		if (time < maxTime)
+			return;
+		maxTime = time;
+		int index = intervalIndex.get(id);
+		if (type == CommandExecutor.TYPE_0 && index == TokenStore.MISSING) {
+			if (intervals == createTimes.length) {
+				createTimes = Arrays.copyOf(createTimes, intervals << 1);
+				expiryTimes = Arrays.copyOf(expiryTimes, intervals << 1);
+			}
+			createTimes[intervals] = time;
+			expiryTimes[intervals] = time + expiryLimit;
+			intervalIndex.put(id, intervals++);
+		} else if (type == CommandExecutor.TYPE_1 && index != TokenStore.MISSING && time <= expiryTimes[index]) {
+			expiryTimes[index] = time + expiryLimit;
+		}
+	}
+
+	// Returns the maximum time from all accepted requests
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+	/*
+	 * Returns the number of tokens active at each of the query times, which must
+	 * be sorted ascending. A token counts as active at T if it was created at or
+	 * before T and expires at or after T.
+	 */
+	public int[] activeTokensAt(int[] queryTimes) {
+		int[] starts = Arrays.copyOf(createTimes, intervals);
+		int[] ends = Arrays.copyOf(expiryTimes, intervals);
+		Arrays.sort(starts);
+		Arrays.sort(ends);
+
+		int[] result = new int[queryTimes.length];
+		int started = 0;
+		int ended = 0;
+		for (int q = 0; q < queryTimes.length; q++) {
+			int time = queryTimes[q];
+			if (q > 0 && time < queryTimes[q - 1])
+				throw new IllegalArgumentException("Query times not sorted ascending at index " + q);
+			while (started < intervals && starts[started] <= time)
+				started++;
+			while (ended < intervals && ends[ended] < time)
+				ended++;
+			result[q] = started - ended;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,210 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Processes many command files in one JVM on a fixed pool of worker threads.
+ * Every worker keeps one TokenManager & resets it between files, so its token
+ * store, expiry queue & ID bitmap are allocated once per worker instead of once
+ * per file. Files ending in .bin are read as BinaryCommandLog, all others in the
+ * text format of example_input.txt.
+ *
+ * The result of every file is written to <file name>.out in the output
+ * directory & a summary with the result & time of every file to summary.txt.
+ * Inputs sharing a file name keep as many parent directories as needed to tell
+ * them apart, e.g. x/a.txt.out & y/a.txt.out.
+ */
+public class BatchRunner {
+
+	public static final String SUMMARY_FILE = "summary.txt";
+	private static final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+
+	private final int threads;
+	private final Path outputDirectory;
+	// Engine of each worker, reset before every file
+	private final ThreadLocal<TokenManager> managers = ThreadLocal.withInitial(() -> new TokenManager(0));
+
+	public BatchRunner(int threads, Path outputDirectory) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive : " + threads);
+		this.threads = threads;
+		this.outputDirectory = outputDirectory;
+	}
+
+	/*
+	 * Expands the arguments into the files to process. Directories contribute
+	 * their regular files in name order, other arguments are taken as files.
+	 */
+	public static List<Path> collectInputs(List<String> arguments) throws IOException {
+		List<Path> inputs = new ArrayList<>();
+		for (String argument : arguments) {
+			Path path = Path.of(argument);
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> files = Files.list(path)) {
+					files.filter(Files::isRegularFile).sorted().forEach(inputs::add);
+				}
+			} else {
+				inputs.add(path);
+			}
+		}
+		return inputs;
+	}
+
+	/*
+	 * Processes all inputs & writes their results & the summary. A file that
+	 * fails is reported in the summary without stopping the others.
+	 */
+	public List<FileResult> run(List<Path> inputs) throws IOException, InterruptedException {
+		Files.createDirectories(outputDirectory);
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, inputs.size())));
+		List<Future<FileResult>> futures = new ArrayList<>(inputs.size());
+		List<Path> outputs = outputNames(inputs);
+		try {
+			for (int i = 0; i < inputs.size(); i++) {
+				Path input = inputs.get(i);
+				Path output = outputDirectory.resolve(outputs.get(i) + ".out");
+				futures.add(pool.submit(() -> process(input, output)));
+			}
+			List<FileResult> results = new ArrayList<>(inputs.size());
+			for (Future<FileResult> future : futures)
+				results.add(future.get());
+			writeSummary(results, System.nanoTime() - start);
+			return results;
+		} catch (ExecutionException ex) {
+			throw new IllegalStateException("Batch worker failed", ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * Returns the name of the result of every input relative to the output
+	 * directory. That is the file name, prefixed with the fewest parent
+	 * directories that no other input with the same file name shares. Only the
+	 * same file listed twice ends up with the same name.
+	 */
+	static List<Path> outputNames(List<Path> inputs) {
+		List<Path> paths = new ArrayList<>(inputs.size());
+		Map<Path, List<Path>> byFileName = new HashMap<>();
+		for (Path input : inputs) {
+			Path path = input.toAbsolutePath().normalize();
+			paths.add(path);
+			byFileName.computeIfAbsent(path.getFileName(), name -> new ArrayList<>()).add(path);
+		}
+		List<Path> names = new ArrayList<>(paths.size());
+		for (Path path : paths) {
+			List<Path> sameName = byFileName.get(path.getFileName());
+			int depth = 1;
+			while (depth < path.getNameCount() && sharesSuffix(path, depth, sameName))
+				depth++;
+			names.add(path.subpath(path.getNameCount() - depth, path.getNameCount()));
+		}
+		return names;
+	}
+
+	// True if another path ends in the same depth names as path
+	private static boolean sharesSuffix(Path path, int depth, List<Path> others) {
+		Path suffix = path.subpath(path.getNameCount() - depth, path.getNameCount());
+		for (Path other : others)
+			if (!other.equals(path) && other.getNameCount() >= depth
+					&& other.subpath(other.getNameCount() - depth, other.getNameCount()).equals(suffix))
+				return true;
+		return false;
+	}
+
+	private FileResult process(Path input, Path output) {
+		long start = System.nanoTime();
+		try {
+			int result = processFile(input, managers.get());
+			Files.createDirectories(output.getParent());
+			Files.writeString(output, result + System.lineSeparator());
+			return new FileResult(input, result, System.nanoTime() - start, null);
+		} catch (IOException | RuntimeException ex) {
+			logger.error("Failed to process " + input, ex);
+			return new FileResult(input, 0, System.nanoTime() - start, ex.toString());
+		}
+	}
+
+	// Runs one file through the reused manager
+	private static int processFile(Path input, TokenManager manager) throws IOException {
+		if (input.getFileName().toString().endsWith(".bin")) {
+			BinaryCommandLog log = BinaryCommandLog.open(input);
+			manager.resetTokenManager(log.getExpiryLimit());
+			CommandExecutor executor = new CommandExecutor(manager);
+			log.readCommands(executor);
+			return executor.finish();
+		}
+		MappedCommandReader reader = MappedCommandReader.open(input);
+		manager.resetTokenManager(reader.getExpiryLimit());
+		CommandExecutor executor = new CommandExecutor(manager);
+		reader.readCommands(executor);
+		return executor.finish();
+	}
+
+	private void writeSummary(List<FileResult> results, long totalNanos) throws IOException {
+		int failed = 0;
+		try (BufferedWriter writer = Files.newBufferedWriter(outputDirectory.resolve(SUMMARY_FILE))) {
+			for (FileResult result : results) {
+				if (result.getError() != null) {
+					failed++;
+					writer.write(result.getInput() + "\tFAILED\t" + result.getMillis() + " ms\t" + result.getError());
+				} else {
+					writer.write(result.getInput() + "\t" + result.getResult() + "\t" + result.getMillis() + " ms");
+				}
+				writer.newLine();
+			}
+			writer.write("Files=" + results.size() + ", failed=" + failed + ", threads=" + threads + ", total="
+					+ totalNanos / 1_000_000 + " ms");
+			writer.newLine();
+		}
+		logger.info("Processed {} files ({} failed) in {} ms", results.size(), failed, totalNanos / 1_000_000);
+	}
+
+	// Outcome of one input file
+	public static class FileResult {
+
+		private final Path input;
+		private final int result;
+		private final long nanos;
+		private final String error;
+
+		FileResult(Path input, int result, long nanos, String error) {
+			this.input = input;
+			this.result = result;
+			this.nanos = nanos;
+			this.error = error;
+		}
+
+		public Path getInput() {
+			return input;
+		}
+
+		// Returns the number of active tokens, 0 if the file failed
+		public int getResult() {
+			return result;
+		}
+
+		public long getMillis() {
+			return nanos / 1_000_000;
+		}
+
+		// Returns the failure, null if the file was processed
+		public String getError() {
+			return error;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Binary command format that is read without parsing text. All ints are
+ * little-endian in this layout -
+ *
+ * int magic, int version, int flags, int expiryLimit, int count
+ * then count x (int type, int id, int T)
+ *
+ * Records are fixed-width by default & read without any decoding. With
+ * FLAG_DELTA_TIME set T is replaced by the difference to the time of the
+ * previous command (the first one to 0) as a zigzag varint of 1 to 5 bytes, so
+ * the usual small forward steps take one byte. Such records vary in width & are
+ * decoded sequentially. Commands are stored as they were read, including
+ * out-of-order ones & invalid types, so replaying a log gives the same result as
+ * the text file it was converted from.
+ */
+public class BinaryCommandLog {
+
+	// "TKCL"
+	private static final int MAGIC = 0x544B434C;
+	private static final int VERSION = 1;
+	public static final int FLAG_DELTA_TIME = 1;
+	private static final int HEADER_BYTES = 5 * Integer.BYTES;
+	private static final int RECORD_INTS = 3;
+	private static final int RECORD_BYTES = RECORD_INTS * Integer.BYTES;
+	// Width of a delta record, type & id plus a varint of 1 to 5 bytes
+	private static final int MIN_DELTA_RECORD_BYTES = 2 * Integer.BYTES + 1;
+	private static final int MAX_DELTA_RECORD_BYTES = 2 * Integer.BYTES + 5;
+
+	private final ByteBuffer records;
+	private final int flags;
+	private final int expiryLimit;
+	private final int count;
+
+	private BinaryCommandLog(ByteBuffer records, int flags, int expiryLimit, int count) {
+		this.records = records;
+		this.flags = flags;
+		this.expiryLimit = expiryLimit;
+		this.count = count;
+	}
+
+	/*
+	 * Memory-maps a binary command log read-only & checks its header. The mapping
+	 * is released by the garbage collector with the log.
+	 */
+	public static BinaryCommandLog open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_BYTES)
+				throw new IOException("Not a binary command log: " + file);
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("Not a binary command log: " + file);
+			int version = buffer.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported binary command log version " + version + ": " + file);
+			int flags = buffer.getInt();
+			int expiryLimit = buffer.getInt();
+			int count = buffer.getInt();
+			boolean sized = (flags & FLAG_DELTA_TIME) != 0
+					? buffer.remaining() >= (long) count * MIN_DELTA_RECORD_BYTES
+							&& buffer.remaining() <= (long) count * MAX_DELTA_RECORD_BYTES
+					: buffer.remaining() == (long) count * RECORD_BYTES;
+			if (count < 0 || !sized)
+				throw new IOException("Binary command log truncated, expected " + count + " commands: " + file);
+			return new BinaryCommandLog(buffer.slice().order(ByteOrder.LITTLE_ENDIAN), flags, expiryLimit, count);
+		}
+	}
+
+	/*
+	 * Converts a command file in the text format of example_input.txt. Lines the
+	 * text reader skips are not written. Returns the number of commands written.
+	 * If reading fails binaryFile is left as it was.
+	 */
+	public static int convert(Path textFile, Path binaryFile, boolean deltaTime) throws IOException {
+		MappedCommandReader reader = MappedCommandReader.open(textFile);
+		try (Writer writer = new Writer(binaryFile, reader.getExpiryLimit(), deltaTime)) {
+			reader.readCommands(writer);
+			writer.commit();
+			return writer.getCount();
+		}
+	}
+
+	public int getExpiryLimit() {
+		return expiryLimit;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public boolean isDeltaTime() {
+		return (flags & FLAG_DELTA_TIME) != 0;
+	}
+
+	// Passes every command to sink in file order & returns the number of commands
+	public int readCommands(CommandSink sink) {
+		if (isDeltaTime())
+			return readDeltaCommands(sink);
+		IntBuffer ints = records.asIntBuffer();
+		for (int i = 0, end = count * RECORD_INTS; i < end; i += RECORD_INTS)
+			sink.accept(ints.get(i), ints.get(i + 1), ints.get(i + 2));
+		return count;
+	}
+
+	private int readDeltaCommands(CommandSink sink) {
+		ByteBuffer in = records.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int time = 0;
+		try {
+			for (int i = 0; i < count; i++) {
+				int type = in.getInt();
+				int id = in.getInt();
+				time += readVarint(in);
+				sink.accept(type, id, time);
+			}
+		} catch (BufferUnderflowException ex) {
+			throw new UncheckedIOException(new IOException("Binary command log truncated, expected " + count
+					+ " commands"));
+		}
+		if (in.hasRemaining())
+			throw new UncheckedIOException(new IOException("Binary command log has " + in.remaining()
+					+ " bytes after the last command"));
+		return count;
+	}
+
+	// Reads a zigzag varint, 7 bits per byte with the high bit set on all but the last
+	private static int readVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0 || shift == 28)
+				return (value >>> 1) ^ -(value & 1);
+		}
+	}
+
+	/*
+	 * Writes commands to a binary command log through a reusable direct buffer.
+	 * The log is written to a temporary file & moved in place by commit, once the
+	 * final count is known, so readers never see a partial log. Closing a writer
+	 * that was not committed deletes the temporary file & leaves the log as it
+	 * was.
+	 */
+	public static class Writer implements CommandSink, Closeable {
+
+		private static final int BUFFER_BYTES = 1 << 16;
+
+		private final Path file;
+		private final Path temp;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private final int expiryLimit;
+		private final boolean deltaTime;
+		private int previousTime;
+		private int count;
+		private boolean committed;
+		private boolean closed;
+
+		public Writer(Path file, int expiryLimit, boolean deltaTime) throws IOException {
+			this.file = file;
+			this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+			this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.expiryLimit = expiryLimit;
+			this.deltaTime = deltaTime;
+			// Header is written on close
+			buffer.position(HEADER_BYTES);
+		}
+
+		@Override
+		public void accept(int type, int id, int time) {
+			if (buffer.remaining() < MAX_DELTA_RECORD_BYTES)
+				flush();
+			buffer.putInt(type);
+			buffer.putInt(id);
+			if (deltaTime)
+				writeVarint(time - previousTime);
+			else
+				buffer.putInt(time);
+			previousTime = time;
+			count++;
+		}
+
+		private void writeVarint(int delta) {
+			int value = (delta << 1) ^ (delta >> 31);
+			while ((value & ~0x7F) != 0) {
+				buffer.put((byte) (value & 0x7F | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		// Completes the log & moves it in place, the writer is closed afterwards
+		public void commit() throws IOException {
+			if (closed)
+				throw new IllegalStateException("Writer is closed");
+			closed = true;
+			try (channel) {
+				flush();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putInt(deltaTime ? FLAG_DELTA_TIME : 0).putInt(expiryLimit)
+						.putInt(count).flip();
+				while (header.hasRemaining())
+					channel.write(header, header.position());
+				channel.force(false);
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			committed = true;
+		}
+
+		// Discards the log unless it was committed
+		@Override
+		public void close() throws IOException {
+			if (committed)
+				return;
+			closed = true;
+			try {
+				channel.close();
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		private void flush() {
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/*
+ * Growable columnar buffer of commands. Collects commands from any source into
+ * three parallel int arrays (type, id, time) so that they can be replayed,
+ * partitioned or written out later without boxing.
+ */
+public class CommandBuffer implements CommandSink {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] types;
+	private int[] ids;
+	private int[] times;
+	private int size;
+
+	public CommandBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public CommandBuffer(int expectedCommands) {
+		int capacity = Math.max(expectedCommands, 1);
+		types = new int[capacity];
+		ids = new int[capacity];
+		times = new int[capacity];
+	}
+
+	@Override
+	public void accept(int type, int id, int time) {
+		if (size == types.length) {
+			int capacity = size << 1;
+			types = Arrays.copyOf(types, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+			times = Arrays.copyOf(times, capacity);
+		}
+		types[size] = type;
+		ids[size] = id;
+		times[size] = time;
+		size++;
+	}
+
+	// Passes all buffered commands to sink in the order they were added
+	public void replay(CommandSink sink) {
+		for (int i = 0; i < size; i++)
+			sink.accept(types[i], ids[i], times[i]);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getType(int index) {
+		return types[index];
+	}
+
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	public int getTime(int index) {
+		return times[index];
+	}
+
+	// Removes all commands, keeping the allocated columns for reuse
+	public void clear() {
+		size = 0;
+	}
+}
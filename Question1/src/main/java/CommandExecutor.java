@@ -0,0 +1,151 @@
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * This class performs validation & execution of commands against a
+ * TokenManager, one command at a time. It keeps track of the maximum time seen
+ * so far so that commands can be streamed in from any source.
+ */
+public class CommandExecutor implements CommandSink {
+
+	/*
+	 * Initializing static resources TYPE_0 - create request constant TYPE_1 - reset
+	 * request constant logger - Logger log4j2 instance
+	 */
+	static final int TYPE_0 = 0;
+	static final int TYPE_1 = 1;
+	private static final Logger logger = LoggerFactory.getLogger(CommandExecutor.class);
+
+	// Token manager the commands are executed against
+	private final TokenManager manager;
+	// Time unit of the last accepted command
+	private int maxTime;
+	// Number of commands passed to accept, including ignored ones
+	private long commandsProcessed;
+	// False when expired tokens are only evicted by sweep
+	private final boolean evictOnAccept;
+
+	public CommandExecutor(TokenManager manager) {
+		this(manager, true);
+	}
+
+	/*
+	 * Creates an executor that leaves eviction to sweep unless evictOnAccept is
+	 * set. Resets still check the expiry of the token, so results are the same
+	 * either way, but getActiveTokens() counts expired tokens until they are swept.
+	 */
+	public CommandExecutor(TokenManager manager, boolean evictOnAccept) {
+		this(manager, 0, 0, evictOnAccept);
+	}
+
+	// Resumes execution from a state restored by TokenSnapshot
+	CommandExecutor(TokenManager manager, int maxTime, long commandsProcessed) {
+		this(manager, maxTime, commandsProcessed, true);
+	}
+
+	private CommandExecutor(TokenManager manager, int maxTime, long commandsProcessed, boolean evictOnAccept) {
+		this.manager = manager;
+		this.maxTime = maxTime;
+		this.commandsProcessed = commandsProcessed;
+		this.evictOnAccept = evictOnAccept;
+		logger.debug("ExpiryLimit={}", manager.getExpiryLimit());
+	}
+
+	/*
+	 * This method performs execution of a single command. type represents
+	 * create/reset request, id represents token identifier, time represents
+	 * creation/reset time.
+	 */
+	@Override
+	public void accept(int type, int id, int time) {
+		commandsProcessed++;
+		// Validation check for input data in ascending order of Time units
+		// Note - If a past time unit received, request is ignored.
+		if (time < maxTime) {
+			manager.getMetrics().recordOutOfOrder();
+			logger.error("Request time not in valid order!");
+			return;
+		}
+
+		// Expire tokens due before this command so the active count stays current
+		if (evictOnAccept)
+			manager.advanceTo(time);
+		switch (type) {
+		case TYPE_0 -> {
+			manager.createToken(id, time);
+		}
+		case TYPE_1 -> {
+			manager.resetToken(id, time);
+		}
+		// Invalid request type validation
+		default -> {
+			manager.getMetrics().recordInvalid();
+			logger.error("Invalid Request Type Exception : Expected 0 for create token or 1 for reset token. Actual="
+					+ type);
+		}
+		}
+		// Since timeunit is processed in ascending order, no comparison needed.
+		// maxTime is the time unit of the last command
+		maxTime = time;
+	}
+
+	// Returns the maximum time from all accepted requests
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+	/*
+	 * Returns the number of tokens active at the time of the last accepted
+	 * command, including expired ones not swept yet if eviction is left to sweep.
+	 * Time Complexity - O(1).
+	 */
+	public int getActiveTokens() {
+		return manager.getActiveTokens();
+	}
+
+	/*
+	 * Returns the number of tokens active at the given time, which must not be
+	 * before the last accepted command. The executor clock moves to time, so later
+	 * commands before it are ignored as out of order.
+	 */
+	public int getActiveTokens(int time) {
+		if (time < maxTime)
+			throw new IllegalArgumentException("Query time " + time + " is before last command time " + maxTime);
+		manager.advanceTo(time);
+		maxTime = time;
+		return manager.getActiveTokens();
+	}
+
+	/*
+	 * Evicts at most maxEntries tokens expired before time, or before the last
+	 * accepted command if that is later. As with getActiveTokens(int), the
+	 * executor clock moves to time, so later commands before it are ignored as out
+	 * of order. Returns true once every token expired at that bound has been
+	 * evicted.
+	 */
+	public boolean sweep(int time, int maxEntries) {
+		if (time > maxTime)
+			maxTime = time;
+		return manager.advanceTo(maxTime, maxEntries);
+	}
+
+	// Returns the number of commands passed to accept, including ignored ones
+	public long getCommandsProcessed() {
+		return commandsProcessed;
+	}
+
+	public TokenManager getManager() {
+		return manager;
+	}
+
+	/*
+	 * Returns the number of tokens active at the maximum time parameter from all
+	 * commands & releases the tokens held by the manager.
+	 */
+	public int finish() {
+		logger.debug("MaxTime={}", maxTime);
+		int noOfTokens = manager.calculateActiveTokens(maxTime);
+		manager.resetTokenManager();
+		return noOfTokens;
+	}
+}
@@ -0,0 +1,10 @@
+/*
+ * Receives token commands one at a time as primitive values, so that parsers &
+ * engines can be chained without building intermediate command lists.
+ */
+@FunctionalInterface
+public interface CommandSink {
+
+	// Accepts a single [type, token_id, T] command
+	void accept(int type, int id, int time);
+}
@@ -0,0 +1,110 @@
+/*
+ * Thread-safe variant of TokenManager for create/reset traffic arriving from
+ * many threads at once. Tokens are spread over a power-of-two number of
+ * stripes by hashing their ID, and each stripe is a plain TokenManager guarded
+ * by its own monitor. All rules for a token are evaluated inside the lock of
+ * its stripe, so create-once, reset-only-if-unexpired & never-reuse hold under
+ * contention while calls for tokens on different stripes run in parallel.
+ *
+ * The stripes share one TokenIdBitmap of created IDs. IDs are assigned to
+ * stripes by a hash of their bitmap cache line, so each line is only ever
+ * written under the lock of a single stripe & cores do not fight over lines
+ * holding bits of other stripes. The bitmap puts consecutive IDs on different
+ * lines, so sequentially allocated IDs are still spread over all stripes.
+ */
+public class ConcurrentTokenManager {
+
+	// Stripes per available core, keeps the chance of two threads colliding low
+	private static final int STRIPES_PER_CORE = 4;
+
+	private final int expiryLimit;
+	private final TokenManager[] stripes;
+	private final TokenIdBitmap createdTokens = new TokenIdBitmap();
+	private final TokenMetrics metrics = new TokenMetrics();
+	private final int stripeMask;
+
+	// Creates a manager with a number of stripes suited to the available cores
+	public ConcurrentTokenManager(int expiryLimit) {
+		this(expiryLimit, Runtime.getRuntime().availableProcessors() * STRIPES_PER_CORE);
+	}
+
+	// Creates a manager with at least the given number of stripes
+	public ConcurrentTokenManager(int expiryLimit, int concurrencyLevel) {
+		int stripeCount = 1;
+		while (stripeCount < concurrencyLevel && stripeCount < (1 << 16))
+			stripeCount <<= 1;
+		this.expiryLimit = expiryLimit;
+		this.stripes = new TokenManager[stripeCount];
+		this.stripeMask = stripeCount - 1;
+		for (int i = 0; i < stripeCount; i++)
+			stripes[i] = new TokenManager(expiryLimit, createdTokens, metrics);
+	}
+
+	// Returns expiry limit
+	public int getExpiryLimit() {
+		return expiryLimit;
+	}
+
+	// Returns counters & latency histograms shared by all stripes
+	public TokenMetrics getMetrics() {
+		return metrics;
+	}
+
+	// Create token request, see TokenManager.createToken
+	public boolean createToken(int id, int time) {
+		TokenManager stripe = stripeFor(id);
+		synchronized (stripe) {
+			return stripe.createToken(id, time);
+		}
+	}
+
+	// Reset token request, see TokenManager.resetToken
+	public boolean resetToken(int id, int time) {
+		TokenManager stripe = stripeFor(id);
+		synchronized (stripe) {
+			return stripe.resetToken(id, time);
+		}
+	}
+
+	/*
+	 * Returns the count of tokens active at currentTime. Stripes are locked one
+	 * after another, so commands running concurrently with this call may or may
+	 * not be included in the count.
+	 */
+	public int calculateActiveTokens(int currentTime) {
+		int activeTokens = 0;
+		for (TokenManager stripe : stripes) {
+			synchronized (stripe) {
+				activeTokens += stripe.calculateActiveTokens(currentTime);
+			}
+		}
+		return activeTokens;
+	}
+
+	/*
+	 * Cleans the tokens of all stripes. Must not run concurrently with other calls
+	 * since the shared set of created IDs is cleared outside the stripe locks.
+	 */
+	public void resetTokenManager() {
+		for (TokenManager stripe : stripes) {
+			synchronized (stripe) {
+				stripe.resetTokenManager();
+			}
+		}
+		createdTokens.clear();
+	}
+
+	private TokenManager stripeFor(int id) {
+		return stripes[stripeOf(id, stripeMask)];
+	}
+
+	/*
+	 * Returns the stripe of a token ID for a power-of-two stripe count. IDs sharing
+	 * a cache line of TokenIdBitmap always map to the same stripe, and consecutive
+	 * IDs are spread over different stripes.
+	 */
+	static int stripeOf(int id, int stripeMask) {
+		int h = TokenIdBitmap.lineOf(id) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & stripeMask;
+	}
+}
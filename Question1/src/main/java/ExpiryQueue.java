@@ -0,0 +1,72 @@
+import java.util.Arrays;
+
+/*
+ * Binary min-heap of (expiry, token ID) pairs ordered by expiry time. Each pair
+ * is packed into a single long with the expiry in the high bits, so the heap is
+ * one primitive array and pushing allocates nothing once it has grown to size.
+ * Entries are never updated in place - a reset pushes a new pair and the old
+ * one is recognised as stale when it is polled.
+ */
+public class ExpiryQueue {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] heap = new long[DEFAULT_CAPACITY];
+	private int size;
+
+	// Adds a token expiring at the given time
+	public void push(int id, int expiry) {
+		if (size == heap.length)
+			heap = Arrays.copyOf(heap, size << 1);
+		long entry = ((long) expiry << 32) | (id & 0xFFFFFFFFL);
+		int index = size++;
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (heap[parent] <= entry)
+				break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = entry;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Returns the earliest expiry time. Queue must not be empty.
+	public int peekExpiry() {
+		return (int) (heap[0] >> 32);
+	}
+
+	// Returns the ID of the token with the earliest expiry. Queue must not be empty.
+	public int peekId() {
+		return (int) heap[0];
+	}
+
+	// Removes the entry with the earliest expiry. Queue must not be empty.
+	public void remove() {
+		long last = heap[--size];
+		int index = 0;
+		int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if (last <= heap[child])
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = last;
+	}
+
+	// Removes all entries, keeping the allocated heap for reuse
+	public void clear() {
+		size = 0;
+	}
+}
@@ -1,14 +1,26 @@
 import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toList;
 
 public class Main {
 
-	public static void main(String[] args) throws IOException {
+	private static final String BATCH_USAGE = "Usage: [-t threads] [-o output directory] files or directories...";
+
+	/*
+	 * Without arguments processes example_input.txt from the resources. Otherwise
+	 * runs in batch mode - [-t threads] [-o output directory] followed by the
+	 * command files or directories to process, see BatchRunner. Malformed
+	 * arguments fail with an IllegalArgumentException naming the usage.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0) {
+			runBatch(args);
+			return;
+		}
 		String inputFile = "/example_input.txt";
 		String outputFile = "example_output.txt";
 
@@ -21,32 +33,90 @@ public class Main {
 		bufferedWriter.close();
 	}
 
+	private static void runBatch(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		Path outputDirectory = Path.of(".");
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			boolean option = "-t".equals(args[i]) || "-o".equals(args[i]);
+			if (option && i + 1 == args.length)
+				throw new IllegalArgumentException(BATCH_USAGE + " : missing value for " + args[i]);
+			if ("-t".equals(args[i]))
+				threads = Integer.parseInt(args[++i]);
+			else if ("-o".equals(args[i]))
+				outputDirectory = Path.of(args[++i]);
+			else
+				inputs.add(args[i]);
+		}
+		if (inputs.isEmpty())
+			throw new IllegalArgumentException(BATCH_USAGE + " : no input files");
+		List<BatchRunner.FileResult> results = new BatchRunner(threads, outputDirectory)
+				.run(BatchRunner.collectInputs(inputs));
+		System.out.printf("Processed %d files, summary in %s%n", results.size(),
+				outputDirectory.resolve(BatchRunner.SUMMARY_FILE));
+	}
+
+	/*
+	 * Processes a command file from the resources. Files on the file system are
+	 * memory-mapped, resources packaged inside a jar are read into a heap buffer.
+	 */
 	public static int processInputFile(String dataFile) throws IOException {
-		InputStream is = Main.class.getResourceAsStream(dataFile);
+		URL resource = Main.class.getResource(dataFile);
 
-		if (is == null) {
+		if (resource == null) {
 			throw new RuntimeException("can not find example_input.txt under resources");
 		}
-		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
-
-		int expiryLimit = Integer.parseInt(bufferedReader.readLine().trim());
+		if ("file".equals(resource.getProtocol())) {
+			try {
+				return processInputFile(Path.of(resource.toURI()));
+			} catch (URISyntaxException ex) {
+				throw new IOException(ex);
+			}
+		}
+		try (InputStream is = resource.openStream()) {
+			return processCommands(new MappedCommandReader(ByteBuffer.wrap(is.readAllBytes())));
+		}
+	}
 
-		int commandsRows = Integer.parseInt(bufferedReader.readLine().trim());
-		int commandsColumns = Integer.parseInt(bufferedReader.readLine().trim());
+	// Processes a command file from the file system
+	public static int processInputFile(Path dataFile) throws IOException {
+		return processCommands(MappedCommandReader.open(dataFile));
+	}
 
-		List<List<Integer>> commands = new ArrayList<>();
+	// Processes a command file written by BinaryCommandLog
+	public static int processBinaryFile(Path dataFile) throws IOException {
+		BinaryCommandLog log = BinaryCommandLog.open(dataFile);
+		CommandExecutor executor = new CommandExecutor(new TokenManager(log.getExpiryLimit()));
+		log.readCommands(executor);
+		return executor.finish();
+	}
 
-		IntStream.range(0, commandsRows).forEach(i -> {
-			try {
-				commands.add(Stream.of(bufferedReader.readLine().replaceAll("\\s+$", "").split(" "))
-						.map(Integer::parseInt).collect(toList()));
-			} catch (IOException ex) {
-				throw new RuntimeException(ex);
-			}
+	/*
+	 * Resumes processing of a command file from a snapshot taken with
+	 * TokenSnapshot.write. Commands already covered by the snapshot are skipped
+	 * without being executed.
+	 */
+	public static int resumeInputFile(Path snapshotFile, Path dataFile) throws IOException {
+		CommandExecutor executor = TokenSnapshot.load(snapshotFile);
+		MappedCommandReader reader = MappedCommandReader.open(dataFile);
+		if (reader.getExpiryLimit() != executor.getManager().getExpiryLimit())
+			throw new IOException("Snapshot expiryLimit " + executor.getManager().getExpiryLimit()
+					+ " does not match command file expiryLimit " + reader.getExpiryLimit());
+		long[] skipped = { executor.getCommandsProcessed() };
+		reader.readCommands((type, id, time) -> {
+			if (skipped[0] > 0)
+				skipped[0]--;
+			else
+				executor.accept(type, id, time);
 		});
+		return executor.finish();
+	}
 
-		bufferedReader.close();
-		return Solution.numberOfTokens(expiryLimit, commands);
+	// Streams all commands of the reader into a new token engine
+	private static int processCommands(MappedCommandReader reader) {
+		CommandExecutor executor = new CommandExecutor(new TokenManager(reader.getExpiryLimit()));
+		reader.readCommands(executor);
+		return executor.finish();
 	}
 
 }
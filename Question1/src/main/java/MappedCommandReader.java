@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Reads command files in the text format of example_input.txt - expiryLimit,
+ * number of commands & number of columns on the first three lines, followed by
+ * one "type id T" command per line. Integers are decoded straight from the
+ * bytes of a memory-mapped file & handed to a CommandSink as they are read, so
+ * no String, Integer or command list is created and the file never has to sit
+ * on the heap.
+ */
+public class MappedCommandReader {
+
+	// Number of parameters expected in every command
+	private static final int COMMAND_PARAMETERS = 3;
+	private static final Logger logger = LoggerFactory.getLogger(MappedCommandReader.class);
+
+	private final ByteBuffer buffer;
+	private final int expiryLimit;
+	private final int commandsRows;
+	private final int commandsColumns;
+	// Parameters of the line being decoded, reused for every line
+	private final int[] params = new int[COMMAND_PARAMETERS];
+
+	/*
+	 * Creates a reader over the bytes remaining in buffer & decodes the header
+	 * lines.
+	 */
+	public MappedCommandReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.expiryLimit = readHeaderLine();
+		this.commandsRows = readHeaderLine();
+		this.commandsColumns = readHeaderLine();
+	}
+
+	/*
+	 * Memory-maps the file read-only. The mapping stays valid after the channel is
+	 * closed and is released by the garbage collector with the reader.
+	 */
+	public static MappedCommandReader open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Command file too large to map: " + file);
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedCommandReader(mapped);
+		}
+	}
+
+	public int getExpiryLimit() {
+		return expiryLimit;
+	}
+
+	public int getCommandsRows() {
+		return commandsRows;
+	}
+
+	public int getCommandsColumns() {
+		return commandsColumns;
+	}
+
+	/*
+	 * Decodes up to commandsRows command lines & passes each one to sink. Lines
+	 * without exactly 3 parameters are logged & skipped. Returns the number of
+	 * lines read.
+	 */
+	public int readCommands(CommandSink sink) {
+		int row = 0;
+		while (row < commandsRows && buffer.hasRemaining()) {
+			int count = readLine();
+			row++;
+			if (count != COMMAND_PARAMETERS)
+				logger.error("Invalid Input : Expected 3 Command Parameters. Actual=" + count + " at row " + row);
+			else
+				sink.accept(params[0], params[1], params[2]);
+		}
+		return row;
+	}
+
+	// Reads a header line holding a single integer
+	private int readHeaderLine() {
+		int count = readLine();
+		if (count != 1)
+			throw new NumberFormatException("Invalid header line : Expected 1 parameter. Actual=" + count);
+		return params[0];
+	}
+
+	/*
+	 * Decodes the integers of the current line into params & moves past the line
+	 * break. Returns the number of integers found on the line, which may exceed the
+	 * size of params.
+	 */
+	private int readLine() {
+		int count = 0;
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get();
+			if (b == '\n')
+				break;
+			if (b == ' ' || b == '\t' || b == '\r')
+				continue;
+			int value = readInt(b);
+			if (count < COMMAND_PARAMETERS)
+				params[count] = value;
+			count++;
+		}
+		return count;
+	}
+
+	// Decodes an integer whose first byte has already been consumed
+	private int readInt(byte first) {
+		boolean negative = first == '-';
+		int value = negative ? 0 : digit(first);
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get(buffer.position());
+			if (b < '0' || b > '9')
+				break;
+			value = value * 10 + (b - '0');
+			buffer.position(buffer.position() + 1);
+		}
+		return negative ? -value : value;
+	}
+
+	private int digit(byte b) {
+		if (b < '0' || b > '9')
+			throw new NumberFormatException("Unexpected character '" + (char) b + "' at offset " + (buffer.position() - 1));
+		return b - '0';
+	}
+}
@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Replays a batch of commands on several cores. Every token's lifecycle only
+ * depends on its own commands, so commands are hash-partitioned by token ID
+ * into shards that each run on a private TokenManager under fork/join, and the
+ * active counts of all shards are summed at the global maximum time.
+ *
+ * Which commands are dropped as out of order depends on the whole stream, so a
+ * serial pre-pass applies the CommandExecutor rules first and only in-order
+ * commands with a valid type reach the shards. The result is identical to
+ * Solution.numberOfTokens for the same commands.
+ */
+public class ParallelCommandReplay {
+
+	// Shards per worker thread, smooths out uneven shard sizes
+	private static final int SHARDS_PER_THREAD = 4;
+	private static final Logger logger = LoggerFactory.getLogger(ParallelCommandReplay.class);
+
+	private ParallelCommandReplay() {
+	}
+
+	/*
+	 * Returns the number of tokens active at the maximum time of all commands,
+	 * replaying on the common fork/join pool. Command i is [types[i], ids[i],
+	 * times[i]].
+	 */
+	public static int numberOfTokens(int expiryLimit, int[] types, int[] ids, int[] times) {
+		return numberOfTokens(expiryLimit, types, ids, times, ForkJoinPool.commonPool());
+	}
+
+	// Same as above, replaying on the given pool
+	public static int numberOfTokens(int expiryLimit, int[] types, int[] ids, int[] times, ForkJoinPool pool) {
+		if (types.length != ids.length || types.length != times.length)
+			throw new IllegalArgumentException("Command columns differ in length : types=" + types.length + ", ids="
+					+ ids.length + ", times=" + times.length);
+		int shardCount = 1;
+		while (shardCount < pool.getParallelism() * SHARDS_PER_THREAD)
+			shardCount <<= 1;
+		int shardMask = shardCount - 1;
+		TokenIdBitmap createdTokens = new TokenIdBitmap();
+		TokenMetrics metrics = new TokenMetrics();
+
+		// Pre-pass - drop commands the serial executor would ignore & size the shards
+		boolean[] accepted = new boolean[types.length];
+		int[] shardSizes = new int[shardCount];
+		int maxTime = 0;
+		for (int i = 0; i < types.length; i++) {
+			if (times[i] < maxTime) {
+				metrics.recordOutOfOrder();
+				logger.error("Request time not in valid order!");
+				continue;
+			}
+			maxTime = times[i];
+			if (types[i] != CommandExecutor.TYPE_0 && types[i] != CommandExecutor.TYPE_1) {
+				metrics.recordInvalid();
+				logger.error("Invalid Request Type Exception : Expected 0 for create token or 1 for reset token. Actual="
+						+ types[i]);
+				continue;
+			}
+			accepted[i] = true;
+			shardSizes[ConcurrentTokenManager.stripeOf(ids[i], shardMask)]++;
+		}
+
+		// Scatter command indexes to their shards, keeping time order within a shard
+		int[][] shardCommands = new int[shardCount][];
+		for (int shard = 0; shard < shardCount; shard++)
+			shardCommands[shard] = new int[shardSizes[shard]];
+		int[] fill = new int[shardCount];
+		for (int i = 0; i < types.length; i++) {
+			if (accepted[i]) {
+				int shard = ConcurrentTokenManager.stripeOf(ids[i], shardMask);
+				shardCommands[shard][fill[shard]++] = i;
+			}
+		}
+
+		List<ShardReplay> tasks = new ArrayList<>(shardCount);
+		for (int shard = 0; shard < shardCount; shard++)
+			tasks.add(new ShardReplay(new TokenManager(expiryLimit, createdTokens, metrics), shardCommands[shard], types,
+					ids, times, maxTime));
+		int finalMaxTime = maxTime;
+		return pool.invoke(new RecursiveTask<Integer>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Integer compute() {
+				int activeTokens = 0;
+				for (ShardReplay task : invokeAll(tasks))
+					activeTokens += task.join();
+				logger.debug("MaxTime={}", finalMaxTime);
+				return activeTokens;
+			}
+		});
+	}
+
+	/*
+	 * Executes the commands of one shard in time order & returns its active count
+	 * at the global maximum time. Shards are assigned with
+	 * ConcurrentTokenManager.stripeOf, so no two shards write the same cache line
+	 * of the shared TokenIdBitmap.
+	 */
+	private static class ShardReplay extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final TokenManager manager;
+		private final int[] commandIndexes;
+		private final int[] types;
+		private final int[] ids;
+		private final int[] times;
+		private final int maxTime;
+
+		ShardReplay(TokenManager manager, int[] commandIndexes, int[] types, int[] ids, int[] times, int maxTime) {
+			this.manager = manager;
+			this.commandIndexes = commandIndexes;
+			this.types = types;
+			this.ids = ids;
+			this.times = times;
+			this.maxTime = maxTime;
+		}
+
+		@Override
+		protected Integer compute() {
+			for (int i : commandIndexes) {
+				if (types[i] == CommandExecutor.TYPE_0)
+					manager.createToken(ids[i], times[i]);
+				else
+					manager.resetToken(ids[i], times[i]);
+			}
+			return manager.calculateActiveTokens(maxTime);
+		}
+	}
+}
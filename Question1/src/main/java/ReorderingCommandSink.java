@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Puts slightly out-of-order commands back into time order before they reach
+ * the downstream sink. Commands are held in a small min-heap ordered by time &
+ * then arrival, and released once the watermark - the highest time seen minus
+ * maxLateness - has passed them. Only commands arriving later than the allowed
+ * lateness are dropped, instead of every command older than the last one.
+ * Commands still held at the end of the stream are released by flush().
+ */
+public class ReorderingCommandSink implements CommandSink {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final Logger logger = LoggerFactory.getLogger(ReorderingCommandSink.class);
+
+	private final CommandSink downstream;
+	private final int maxLateness;
+
+	// Min-heap of held commands, ordered by time & then arrival sequence
+	private int[] times = new int[DEFAULT_CAPACITY];
+	private long[] sequences = new long[DEFAULT_CAPACITY];
+	private int[] types = new int[DEFAULT_CAPACITY];
+	private int[] ids = new int[DEFAULT_CAPACITY];
+	private int size;
+
+	private long nextSequence;
+	// Highest time seen minus maxLateness. Commands before it are too late.
+	private long watermark = Long.MIN_VALUE;
+	private long lateCommands;
+
+	public ReorderingCommandSink(CommandSink downstream, int maxLateness) {
+		if (maxLateness < 0)
+			throw new IllegalArgumentException("maxLateness must not be negative : " + maxLateness);
+		this.downstream = downstream;
+		this.maxLateness = maxLateness;
+	}
+
+	@Override
+	public void accept(int type, int id, int time) {
+		if (time < watermark) {
+			lateCommands++;
+			logger.error("Request time later than allowed lateness! Time=" + time + ", watermark=" + watermark);
+			return;
+		}
+		push(type, id, time);
+		watermark = Math.max(watermark, time - (long) maxLateness);
+		// Nothing before the watermark can arrive any more, release it in order
+		while (size > 0 && times[0] <= watermark)
+			release();
+	}
+
+	// Releases all held commands in time order, e.g. at the end of the stream
+	public void flush() {
+		while (size > 0)
+			release();
+	}
+
+	// Returns the number of commands dropped for arriving after the watermark
+	public long getLateCommands() {
+		return lateCommands;
+	}
+
+	// Returns the number of commands held back
+	public int getPending() {
+		return size;
+	}
+
+	private void push(int type, int id, int time) {
+		if (size == times.length) {
+			int capacity = size << 1;
+			times = Arrays.copyOf(times, capacity);
+			sequences = Arrays.copyOf(sequences, capacity);
+			types = Arrays.copyOf(types, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+		}
+		long sequence = nextSequence++;
+		int index = size++;
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!before(time, sequence, times[parent], sequences[parent]))
+				break;
+			move(parent, index);
+			index = parent;
+		}
+		set(index, type, id, time, sequence);
+	}
+
+	// Passes the earliest held command downstream & removes it from the heap
+	private void release() {
+		downstream.accept(types[0], ids[0], times[0]);
+		int last = --size;
+		int type = types[last];
+		int id = ids[last];
+		int time = times[last];
+		long sequence = sequences[last];
+		int index = 0;
+		int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			if (child + 1 < size && before(times[child + 1], sequences[child + 1], times[child], sequences[child]))
+				child++;
+			if (!before(times[child], sequences[child], time, sequence))
+				break;
+			move(child, index);
+			index = child;
+		}
+		set(index, type, id, time, sequence);
+	}
+
+	private static boolean before(int time, long sequence, int otherTime, long otherSequence) {
+		return time < otherTime || (time == otherTime && sequence < otherSequence);
+	}
+
+	private void move(int from, int to) {
+		set(to, types[from], ids[from], times[from], sequences[from]);
+	}
+
+	private void set(int index, int type, int id, int time, long sequence) {
+		types[index] = type;
+		ids[index] = id;
+		times[index] = time;
+		sequences[index] = sequence;
+	}
+}
@@ -1,3 +1,4 @@
+import java.nio.IntBuffer;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -5,11 +6,8 @@ import org.slf4j.LoggerFactory;
 class Solution {
 
 	/*
-	 * Initializing static resources TYPE_0 - create request constant TYPE_1 - reset
-	 * request constant logger - Logger log4j2 instance
+	 * Initializing static resources logger - Logger log4j2 instance
 	 */
-	private static final int TYPE_0 = 0;
-	private static final int TYPE_1 = 1;
 	private static final Logger logger = LoggerFactory.getLogger(Solution.class);
 
 	/*
@@ -19,69 +17,121 @@ class Solution {
 	 * update, activation & expiration.
 	 */
 	public static int numberOfTokens(int expiryLimit, List<List<Integer>> commands) {
-		TokenManager manager = new TokenManager(expiryLimit);
-		int maxTime = executeCommands(manager, commands);
-		logger.debug("MaxTime=" + maxTime);
-		Integer noOfTokens = manager.calculateActiveTokens(maxTime);
-		manager.resetTokenManager();
-		return noOfTokens;
+		CommandExecutor executor = new CommandExecutor(new TokenManager(expiryLimit));
+		replay(pack(commands, executor.getManager().getMetrics()), executor);
+		return executor.finish();
 	}
 
 	/*
-	 * This method performs validation & execution of commands. Calculates & returns
-	 * the maximum time from all requests.
+	 * Same as numberOfTokens(int, List) for callers already holding primitive
+	 * commands. Each commands[i] holds [type, token_id, T].
 	 */
-	private static int executeCommands(TokenManager manager, List<List<Integer>> commands) {
-		logger.debug("ExpiryLimit=" + manager.getExpiryLimit());
-		int maxTime = 0;
+	public static int numberOfTokens(int expiryLimit, int[][] commands) {
+		CommandExecutor executor = new CommandExecutor(new TokenManager(expiryLimit));
+		replay(pack(commands, executor.getManager().getMetrics()), executor);
+		return executor.finish();
+	}
+
+	/*
+	 * Same as numberOfTokens(int, int[][]) for commands that may arrive up to
+	 * maxLateness time units out of order. They are put back into time order by a
+	 * ReorderingCommandSink instead of being ignored.
+	 */
+	public static int numberOfTokens(int expiryLimit, int[][] commands, int maxLateness) {
+		CommandExecutor executor = new CommandExecutor(new TokenManager(expiryLimit));
+		ReorderingCommandSink reorder = new ReorderingCommandSink(executor, maxLateness);
+		replay(pack(commands, executor.getManager().getMetrics()), reorder);
+		reorder.flush();
+		return executor.finish();
+	}
+
+	/*
+	 * Same as numberOfTokens(int, List) for commands held in three parallel
+	 * columns. Command i is [types[i], ids[i], times[i]].
+	 */
+	public static int numberOfTokens(int expiryLimit, int[] types, int[] ids, int[] times) {
+		if (types.length != ids.length || types.length != times.length)
+			throw new IllegalArgumentException("Command columns differ in length : types=" + types.length + ", ids="
+					+ ids.length + ", times=" + times.length);
+		CommandExecutor executor = new CommandExecutor(new TokenManager(expiryLimit));
+		for (int i = 0; i < types.length; i++)
+			executor.accept(types[i], ids[i], times[i]);
+		return executor.finish();
+	}
+
+	/*
+	 * Same as numberOfTokens(int, List) for commands packed as consecutive
+	 * [type, token_id, T] triples in the remaining part of the buffer. The
+	 * buffer position is left unchanged.
+	 */
+	public static int numberOfTokens(int expiryLimit, IntBuffer commands) {
+		if (commands.remaining() % 3 != 0)
+			throw new IllegalArgumentException(
+					"Packed commands not a multiple of 3 integers : remaining=" + commands.remaining());
+		CommandExecutor executor = new CommandExecutor(new TokenManager(expiryLimit));
+		replay(commands, executor);
+		return executor.finish();
+	}
+
+	/*
+	 * Returns the number of tokens active at each of the query times, which must
+	 * be sorted ascending. All queries are answered from a single replay of the
+	 * commands, see ActiveTokenTimeline.
+	 */
+	public static int[] numberOfTokensAt(int expiryLimit, int[][] commands, int[] queryTimes) {
+		ActiveTokenTimeline timeline = new ActiveTokenTimeline(expiryLimit);
+		replay(pack(commands, null), timeline);
+		return timeline.activeTokensAt(queryTimes);
+	}
+
+	/*
+	 * Hands the [type, token_id, T] triples in the remaining part of the buffer to
+	 * sink one by one. All overloads except the columnar one end up here.
+	 */
+	private static void replay(IntBuffer commands, CommandSink sink) {
+		for (int i = commands.position(); i < commands.limit(); i += 3)
+			sink.accept(commands.get(i), commands.get(i + 1), commands.get(i + 2));
+	}
+
+	// Packs the commands with exactly 3 parameters into consecutive triples
+	private static IntBuffer pack(List<List<Integer>> commands, TokenMetrics metrics) {
+		int[] packed = new int[commands.size() * 3];
+		int length = 0;
 		for (List<Integer> cmd : commands) {
 			// Validation to check that we are receiving exactly 3 parameters - type, id,
 			// time
-			if (cmd.size() != 3)
-				logger.error("Invalid Input : Expected 3 Command Parameters. Actual=" + cmd);
-			else {
-				maxTime = executeCommand(manager, cmd, maxTime);
+			if (cmd.size() != 3) {
+				rejectCommand(metrics, cmd.size());
+			} else {
+				packed[length++] = cmd.get(0);
+				packed[length++] = cmd.get(1);
+				packed[length++] = cmd.get(2);
 			}
 		}
-		return maxTime;
+		return IntBuffer.wrap(packed, 0, length);
 	}
 
-	/*
-	 * This method performs execution of a single command.
-	 */
-	private static int executeCommand(TokenManager manager, List<Integer> cmd, int maxTime) {
-		/*
-		 * Initialize local fields type represents create/reset request id represents
-		 * token identifier time represents creation/reset time
-		 */
-		Integer type = cmd.get(0);
-		Integer id = cmd.get(1);
-		Integer time = cmd.get(2);
-
-		// Validation check for input data in ascending order of Time units
-		// Note - If a past time unit received, request is ignored.
-		if (time < maxTime) {
-			logger.error("Request time not in valid order!");
-			return maxTime;
+	// Same as pack(List, TokenMetrics) for primitive commands
+	private static IntBuffer pack(int[][] commands, TokenMetrics metrics) {
+		int[] packed = new int[commands.length * 3];
+		int length = 0;
+		for (int[] cmd : commands) {
+			if (cmd.length != 3) {
+				rejectCommand(metrics, cmd.length);
+			} else {
+				packed[length++] = cmd[0];
+				packed[length++] = cmd[1];
+				packed[length++] = cmd[2];
+			}
 		}
+		return IntBuffer.wrap(packed, 0, length);
+	}
 
-		switch (type) {
-		case TYPE_0 -> {
-			manager.createToken(id, time);
-		}
-		case TYPE_1 -> {
-			manager.resetToken(id, time);
-		}
-		// Invalid request type validation
-		default -> {
-			logger.error("Invalid Request Type Exception : Expected 0 for create token or 1 for reset token. Actual="
-					+ type);
-		}
-		}
-		// Since timeunit is processed in ascending order, no comparison needed.
-		// maxTime is the time unit of the last command
-		maxTime = time;
-		return maxTime;
+	// Logs a command with a wrong parameter count & counts it if metrics is given
+	private static void rejectCommand(TokenMetrics metrics, int parameters) {
+		if (metrics != null)
+			metrics.recordInvalid();
+		logger.error("Invalid Input : Expected 3 Command Parameters. Actual=" + parameters);
 	}
 
 }
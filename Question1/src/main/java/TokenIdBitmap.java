@@ -0,0 +1,103 @@
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/*
+ * Set of token IDs kept as one bit per ID. The ID space is split into chunks of
+ * 65536 IDs that are allocated on first use, so sparse ID ranges cost nothing
+ * and a fully populated range below 10^8 is capped at 1526 chunks of 8 KB
+ * (about 12 MB). Membership checks & inserts are O(1) and never allocate once
+ * the chunk of an ID exists.
+ *
+ * Within a chunk the low bits of an ID pick one of 128 cache lines of 8 words,
+ * so consecutive IDs land on different lines & IDs sharing a line are 128
+ * apart. Not thread-safe in general. Threads may share a bitmap as long as
+ * every line (IDs with the same lineOf) is only ever updated under one lock,
+ * see ConcurrentTokenManager. Chunk allocation is synchronized for that case.
+ */
+public class TokenIdBitmap {
+
+	private static final int CHUNK_BITS = 16;
+	static final int WORDS_PER_CHUNK = 1 << (CHUNK_BITS - 6);
+	// One chunk slot for every 65536 IDs of the unsigned 32-bit range
+	static final int CHUNK_COUNT = 1 << (32 - CHUNK_BITS);
+	// 64-byte cache lines of 8 words per chunk are 1 << LINE_BITS
+	private static final int LINE_BITS = CHUNK_BITS - 6 - 3;
+	private static final int LINE_MASK = (1 << LINE_BITS) - 1;
+
+	private final long[][] chunks = new long[CHUNK_COUNT][];
+
+	// Checks if the ID is in the set
+	public boolean contains(int id) {
+		long[] chunk = chunks[id >>> CHUNK_BITS];
+		return chunk != null && (chunk[wordOf(id)] & bitOf(id)) != 0;
+	}
+
+	// Adds the ID to the set. Returns false if it was already present.
+	public boolean add(int id) {
+		long[] chunk = chunks[id >>> CHUNK_BITS];
+		if (chunk == null)
+			chunk = allocateChunk(id >>> CHUNK_BITS);
+		int word = wordOf(id);
+		long bit = bitOf(id);
+		if ((chunk[word] & bit) != 0)
+			return false;
+		chunk[word] |= bit;
+		return true;
+	}
+
+	/*
+	 * Returns the cache line holding the ID, unique across chunks. Consecutive IDs
+	 * have consecutive lines.
+	 */
+	static int lineOf(int id) {
+		return (id >>> CHUNK_BITS) << LINE_BITS | (id & LINE_MASK);
+	}
+
+	// Word of its chunk holding the ID, the line is followed by the word in the line
+	private static int wordOf(int id) {
+		return (id & LINE_MASK) << 3 | (id >>> LINE_BITS) & 7;
+	}
+
+	// Bit of its word for the ID, the shift only uses the low 6 bits of the distance
+	private static long bitOf(int id) {
+		return 1L << (id >>> (LINE_BITS + 3));
+	}
+
+	// Returns the number of bytes held by allocated chunks
+	public long allocatedBytes() {
+		long bytes = 0;
+		for (long[] chunk : chunks)
+			if (chunk != null)
+				bytes += (long) WORDS_PER_CHUNK * Long.BYTES;
+		return bytes;
+	}
+
+	// Returns the words of a chunk, null if it was never allocated
+	long[] getChunk(int index) {
+		return chunks[index];
+	}
+
+	// Replaces the words of a chunk with the next WORDS_PER_CHUNK words of source
+	void loadChunk(int index, LongBuffer source) {
+		long[] chunk = chunks[index];
+		if (chunk == null)
+			chunk = allocateChunk(index);
+		source.get(chunk);
+	}
+
+	// Removes all IDs, keeping the allocated chunks for reuse
+	public void clear() {
+		for (long[] chunk : chunks)
+			if (chunk != null)
+				Arrays.fill(chunk, 0L);
+	}
+
+	private synchronized long[] allocateChunk(int index) {
+		long[] chunk = chunks[index];
+		if (chunk == null) {
+			chunk = new long[WORDS_PER_CHUNK];
+			chunks[index] = chunk;
+		}
+		return chunk;
+	}
+}
@@ -1,9 +1,3 @@
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,17 +9,32 @@ public class TokenManager {
 	// Expiry limit
 	private int expiryLimit;
 	// Stores all valid tokens with key as id, value as expiry time
-	private Map<Integer, Integer> tokenMap;
-	// Stores expired token IDs
-	private Set<Integer> expiredTokens;
-	// Logger instance
+	private TokenStore tokenStore;
+	// Stores IDs of all tokens ever created (active or expired)
+	private TokenIdBitmap createdTokens;
+	// False when createdTokens is owned & cleared by a ConcurrentTokenManager
+	private boolean ownsCreatedTokens;
+	// Orders tokens by expiry time. Resets leave stale entries behind, which are
+	// discarded once they reach the head of the queue.
+	private ExpiryQueue expiryQueue;
+	// Counters & latency histograms, latencies are only sampled when enabled
+	private TokenMetrics metrics;
+	// Logger instance, per-token logging is opt-in at DEBUG level
 	private static final Logger logger = LoggerFactory.getLogger(TokenManager.class);
 
 	// Parameterized constructor - expiryLimit to be provided to instantiate
 	public TokenManager(int expiryLimit) {
+		this(expiryLimit, new TokenIdBitmap(), new TokenMetrics());
+		ownsCreatedTokens = true;
+	}
+
+	// Creates a manager sharing the set of created IDs & metrics with other managers
+	TokenManager(int expiryLimit, TokenIdBitmap createdTokens, TokenMetrics metrics) {
 		this.expiryLimit = expiryLimit;
-		tokenMap = new HashMap<Integer, Integer>();
-		expiredTokens = new HashSet<Integer>();
+		this.createdTokens = createdTokens;
+		this.metrics = metrics;
+		tokenStore = new TokenStore();
+		expiryQueue = new ExpiryQueue();
 	}
 
 	// Returns expiry limit
@@ -33,38 +42,97 @@ public class TokenManager {
 		return expiryLimit;
 	}
 
-	// Creates or updates token in tokenMap
+	// Returns counters & latency histograms of this manager
+	public TokenMetrics getMetrics() {
+		return metrics;
+	}
+
+	// Returns the store of valid tokens, used for snapshots
+	TokenStore getTokenStore() {
+		return tokenStore;
+	}
+
+	// Returns the IDs of all tokens ever created, used for snapshots
+	TokenIdBitmap getCreatedTokens() {
+		return createdTokens;
+	}
+
+	/*
+	 * Adds a valid token restored from a snapshot. Its ID must already be in
+	 * createdTokens.
+	 */
+	void restoreToken(int tokenId, int expiry) {
+		tokenStore.put(tokenId, expiry);
+		expiryQueue.push(tokenId, expiry);
+	}
+
+	// Creates or updates token in tokenStore
 	private void updateToken(int tokenId, int time) {
-		tokenMap.put(tokenId, (time + expiryLimit));
+		int expiry = time + expiryLimit;
+		tokenStore.put(tokenId, expiry);
+		expiryQueue.push(tokenId, expiry);
 	}
 
 	// Checks if token is active at currentTime
 	private boolean isTokenActive(int tokenId, int currentTime) {
-		if (tokenMap.containsKey(tokenId) && currentTime <= tokenMap.get(tokenId))
-			return true;
-		return false;
+		int expiry = tokenStore.get(tokenId);
+		return expiry != TokenStore.MISSING && currentTime <= expiry;
 	}
 
 	/*
-	 * Responsible for cleaning up tokens. Checks all valid tokens present in
-	 * tokenMap & gathers all expired tokens at currentTime into expiredTokens set.
-	 * Removes all expired tokens from tokenMap & returns the count of active
-	 * tokens. Time Complexity - O(n) : can use a different data structure for
-	 * improvements.
+	 * Responsible for cleaning up tokens. Expires all tokens due before
+	 * currentTime & returns the count of active tokens.
 	 */
 	public int calculateActiveTokens(int currentTime) {
-		Iterator<Integer> itr = tokenMap.keySet().iterator();
-		while (itr.hasNext()) {
-			int token = itr.next();
-			if (isTokenActive(token, currentTime)) {
-				logger.debug("Token:" + token + " is active");
-			} else {
-				expiredTokens.add(token);
-				itr.remove();
-				logger.debug("Token:" + token + " expired");
-			}
+		boolean timed = metrics.isLatencyEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		advanceTo(currentTime);
+		int activeTokens = tokenStore.liveCount();
+		if (timed)
+			metrics.recordLatency(TokenMetrics.Operation.QUERY, System.nanoTime() - start);
+		if (logger.isDebugEnabled())
+			logger.debug("Active tokens at time={} : {}", currentTime, activeTokens);
+		return activeTokens;
+	}
+
+	/*
+	 * Pops every entry of expiryQueue that expired before currentTime & removes the
+	 * token from tokenStore unless a later reset superseded the entry. Its ID stays
+	 * in createdTokens so that it cannot be reused. Time
+	 * Complexity - amortized O(k log n) where k is the number of entries expired
+	 * since the previous call.
+	 */
+	public void advanceTo(int currentTime) {
+		advanceTo(currentTime, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Same as advanceTo(int) but pops at most maxEntries entries, so that a large
+	 * backlog of expired tokens can be evicted in small steps. Returns true once no
+	 * entry due before currentTime is left.
+	 */
+	public boolean advanceTo(int currentTime, int maxEntries) {
+		int popped = 0;
+		while (!expiryQueue.isEmpty() && expiryQueue.peekExpiry() < currentTime) {
+			if (popped++ == maxEntries)
+				return false;
+			int token = expiryQueue.peekId();
+			int expiry = expiryQueue.peekExpiry();
+			expiryQueue.remove();
+			// Entry is stale if the token has been reset since it was queued
+			if (tokenStore.get(token) == expiry)
+				tokenStore.remove(token);
 		}
-		return tokenMap.size();
+		return true;
+	}
+
+	/*
+	 * Returns the count of active tokens as of the last time passed to advanceTo
+	 * or calculateActiveTokens, plus any token created or reset since. Time
+	 * Complexity - O(1).
+	 */
+	public int getActiveTokens() {
+		return tokenStore.liveCount();
 	}
 
 	/*
@@ -72,14 +140,21 @@ public class TokenManager {
 	 * token has not expired
 	 */
 	public boolean resetToken(int id, int time) {
-		if (isTokenActive(id, time)) {
+		boolean timed = metrics.isLatencyEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		boolean reset = isTokenActive(id, time);
+		if (reset)
 			updateToken(id, time);
-			logger.info("Token=" + id + " reset at time=" + time);
-			return true;
-		} else {
-			logger.info("Cannot reset token=" + id + " : Token expired/does not exist.");
-			return false;
+		metrics.recordReset(reset);
+		if (timed)
+			metrics.recordLatency(TokenMetrics.Operation.RESET, System.nanoTime() - start);
+		if (logger.isDebugEnabled()) {
+			if (reset)
+				logger.debug("Token={} reset at time={}", id, time);
+			else
+				logger.debug("Cannot reset token={} : Token expired/does not exist.", id);
 		}
+		return reset;
 	}
 
 	/*
@@ -87,25 +162,34 @@ public class TokenManager {
 	 * created if validation successful.
 	 */
 	public boolean createToken(int id, int time) {
-		if (tokenExists(id)) {
-			logger.info("Cannot create token=" + id + " : Token ID already exists/expired.");
-			return false;
-		} else {
+		boolean timed = metrics.isLatencyEnabled();
+		long start = timed ? System.nanoTime() : 0;
+		boolean created = createdTokens.add(id);
+		if (created)
 			updateToken(id, time);
-			logger.info("Token=" + id + " created at time=" + time);
-			return true;
+		metrics.recordCreate(created);
+		if (timed)
+			metrics.recordLatency(TokenMetrics.Operation.CREATE, System.nanoTime() - start);
+		if (logger.isDebugEnabled()) {
+			if (created)
+				logger.debug("Token={} created at time={}", id, time);
+			else
+				logger.debug("Cannot create token={} : Token ID already exists/expired.", id);
 		}
-
-	}
-
-	// Checks if token already exists (active or expired)
-	private boolean tokenExists(int tokenId) {
-		return tokenMap.containsKey(tokenId) || expiredTokens.contains(tokenId);
+		return created;
 	}
 
 	// Cleans the tokens before the program/call ends
 	public void resetTokenManager() {
-		tokenMap.clear();
-		expiredTokens.clear();
+		tokenStore.clear();
+		expiryQueue.clear();
+		if (ownsCreatedTokens)
+			createdTokens.clear();
+	}
+
+	// Clears the manager for reuse with another expiry limit, keeping its buffers
+	public void resetTokenManager(int expiryLimit) {
+		this.expiryLimit = expiryLimit;
+		resetTokenManager();
 	}
 }
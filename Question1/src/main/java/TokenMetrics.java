@@ -0,0 +1,214 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters & latency histograms of the token engine. Recording only updates
+ * preallocated LongAdders, so it is allocation-free and safe to share between
+ * the stripes of a ConcurrentTokenManager & the shards of a
+ * ParallelCommandReplay. Each LongAdder spreads concurrent updates over
+ * per-thread cells that are only summed by snapshot().
+ *
+ * Latency sampling costs two System.nanoTime() calls per operation, so it is
+ * opt-in, either with setLatencyEnabled or the system property
+ * tokens.metrics.latency=true. Counters are always recorded.
+ */
+public class TokenMetrics {
+
+	// Operations with a latency histogram
+	public enum Operation {
+		CREATE, RESET, QUERY
+	}
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder duplicateCreates = new LongAdder();
+	private final LongAdder resetsAccepted = new LongAdder();
+	private final LongAdder resetsIgnored = new LongAdder();
+	private final LongAdder outOfOrder = new LongAdder();
+	private final LongAdder invalidCommands = new LongAdder();
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+	private volatile boolean latencyEnabled = Boolean.getBoolean("tokens.metrics.latency");
+
+	public TokenMetrics() {
+		for (int i = 0; i < latencies.length; i++)
+			latencies[i] = new LatencyHistogram();
+	}
+
+	// True if callers should time their operations & pass them to recordLatency
+	public boolean isLatencyEnabled() {
+		return latencyEnabled;
+	}
+
+	public void setLatencyEnabled(boolean latencyEnabled) {
+		this.latencyEnabled = latencyEnabled;
+	}
+
+	public void recordCreate(boolean accepted) {
+		(accepted ? created : duplicateCreates).increment();
+	}
+
+	public void recordReset(boolean accepted) {
+		(accepted ? resetsAccepted : resetsIgnored).increment();
+	}
+
+	public void recordLatency(Operation operation, long latencyNanos) {
+		latencies[operation.ordinal()].record(latencyNanos);
+	}
+
+	// Commands ignored because their time is before the last accepted command
+	public void recordOutOfOrder() {
+		outOfOrder.increment();
+	}
+
+	// Commands ignored because of a wrong request type or parameter count
+	public void recordInvalid() {
+		invalidCommands.increment();
+	}
+
+	// Returns a point-in-time copy of all counters & histograms
+	public Snapshot snapshot() {
+		LatencySnapshot[] latencySnapshots = new LatencySnapshot[latencies.length];
+		for (int i = 0; i < latencies.length; i++)
+			latencySnapshots[i] = latencies[i].snapshot();
+		return new Snapshot(created.sum(), duplicateCreates.sum(), resetsAccepted.sum(), resetsIgnored.sum(),
+				outOfOrder.sum(), invalidCommands.sum(), latencySnapshots);
+	}
+
+	// Sets all counters & histograms back to zero
+	public void reset() {
+		created.reset();
+		duplicateCreates.reset();
+		resetsAccepted.reset();
+		resetsIgnored.reset();
+		outOfOrder.reset();
+		invalidCommands.reset();
+		for (LatencyHistogram histogram : latencies)
+			histogram.reset();
+	}
+
+	/*
+	 * Histogram with one bucket per power of two nanoseconds. Bucket i counts
+	 * latencies in [2^(i-1), 2^i), bucket 0 counts zero latencies. Every bucket is
+	 * its own LongAdder, so threads recording into the same bucket do not contend.
+	 */
+	private static class LatencyHistogram {
+
+		private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+		LatencyHistogram() {
+			for (int i = 0; i < buckets.length; i++)
+				buckets[i] = new LongAdder();
+		}
+
+		void record(long latencyNanos) {
+			buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(latencyNanos, 0))].increment();
+		}
+
+		LatencySnapshot snapshot() {
+			long[] counts = new long[buckets.length];
+			for (int i = 0; i < counts.length; i++)
+				counts[i] = buckets[i].sum();
+			return new LatencySnapshot(counts);
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets)
+				bucket.reset();
+		}
+	}
+
+	/*
+	 * Immutable copy of the counters.
+	 */
+	public static class Snapshot {
+
+		private final long created;
+		private final long duplicateCreates;
+		private final long resetsAccepted;
+		private final long resetsIgnored;
+		private final long outOfOrder;
+		private final long invalidCommands;
+		private final LatencySnapshot[] latencies;
+
+		Snapshot(long created, long duplicateCreates, long resetsAccepted, long resetsIgnored, long outOfOrder,
+				long invalidCommands, LatencySnapshot[] latencies) {
+			this.created = created;
+			this.duplicateCreates = duplicateCreates;
+			this.resetsAccepted = resetsAccepted;
+			this.resetsIgnored = resetsIgnored;
+			this.outOfOrder = outOfOrder;
+			this.invalidCommands = invalidCommands;
+			this.latencies = latencies;
+		}
+
+		public long getCreated() {
+			return created;
+		}
+
+		public long getDuplicateCreates() {
+			return duplicateCreates;
+		}
+
+		public long getResetsAccepted() {
+			return resetsAccepted;
+		}
+
+		public long getResetsIgnored() {
+			return resetsIgnored;
+		}
+
+		public long getOutOfOrder() {
+			return outOfOrder;
+		}
+
+		public long getInvalidCommands() {
+			return invalidCommands;
+		}
+
+		public LatencySnapshot getLatency(Operation operation) {
+			return latencies[operation.ordinal()];
+		}
+
+		@Override
+		public String toString() {
+			return "created=" + created + ", duplicateCreates=" + duplicateCreates + ", resetsAccepted="
+					+ resetsAccepted + ", resetsIgnored=" + resetsIgnored + ", outOfOrder=" + outOfOrder
+					+ ", invalidCommands=" + invalidCommands;
+		}
+	}
+
+	/*
+	 * Immutable copy of a latency histogram.
+	 */
+	public static class LatencySnapshot {
+
+		private final long[] buckets;
+		private final long count;
+
+		LatencySnapshot(long[] buckets) {
+			this.buckets = buckets;
+			long total = 0;
+			for (long bucket : buckets)
+				total += bucket;
+			this.count = total;
+		}
+
+		// Returns the number of recorded latencies
+		public long getCount() {
+			return count;
+		}
+
+		/*
+		 * Returns an upper bound in nanoseconds of the given percentile (0-100), i.e.
+		 * the upper edge of the bucket it falls in. Returns 0 if nothing was recorded.
+		 */
+		public long getPercentileNanos(double percentile) {
+			long rank = (long) Math.ceil(count * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank && seen > 0)
+					return i == 0 ? 0 : (i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+			}
+			return 0;
+		}
+	}
+}
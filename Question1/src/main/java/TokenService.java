@@ -0,0 +1,170 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Continuous token engine for a process that ingests commands indefinitely.
+ * Producers push batches of commands through a bounded queue, which blocks them
+ * when the engine falls behind. A single worker thread drains the queue into a
+ * CommandExecutor, so the engine itself stays single-threaded.
+ *
+ * Commands do not evict expired tokens themselves. After every batch the worker
+ * evicts at most sweepBudget tokens expired before its last command, & a
+ * background sweeper asks the worker at a fixed rate to evict the tokens expired
+ * before the time given by clock, sweepBudget at a time, yielding to queued
+ * batches in between. So the store stays proportional to the active tokens &
+ * the count drops while no commands arrive. A sweep moves the command clock to
+ * its time, commands stamped before it are ignored as out of order. The active
+ * count is published after every batch & sweep step & read without blocking; it
+ * includes expired tokens the worker has not reached yet. A batch or sweep that
+ * fails is logged & the worker carries on with the next one.
+ */
+public class TokenService implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+	// Queue markers, compared by identity
+	private static final int[] SWEEP = new int[0];
+	private static final int[] STOP = new int[0];
+
+	private final CommandExecutor executor;
+	private final BlockingQueue<int[]> queue;
+	private final IntSupplier clock;
+	private final int sweepBudget;
+	private final Thread worker;
+	private final ScheduledExecutorService sweeper;
+	// Set while a SWEEP marker is queued, so ticks do not pile up markers
+	private final AtomicBoolean sweepPending = new AtomicBoolean();
+
+	private volatile int activeTokens;
+	private volatile boolean closed;
+
+	/*
+	 * Starts a service with a queue of queueCapacity batches. clock returns the
+	 * current time in the unit of the command times. Every sweepIntervalMillis
+	 * the expired tokens up to that time are evicted, sweepBudget at a time.
+	 */
+	public TokenService(int expiryLimit, int queueCapacity, IntSupplier clock, long sweepIntervalMillis,
+			int sweepBudget) {
+		if (sweepBudget <= 0)
+			throw new IllegalArgumentException("sweepBudget must be positive : " + sweepBudget);
+		this.executor = new CommandExecutor(new TokenManager(expiryLimit), false);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.clock = clock;
+		this.sweepBudget = sweepBudget;
+
+		worker = new Thread(this::drain, "token-service-worker");
+		worker.start();
+		sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "token-service-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleAtFixedRate(this::requestSweep, sweepIntervalMillis, sweepIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	// A sweep still waiting in the queue is as good as a new one, so skip the tick
+	private void requestSweep() {
+		if (sweepPending.compareAndSet(false, true) && !queue.offer(SWEEP))
+			sweepPending.set(false);
+	}
+
+	/*
+	 * Queues a batch of commands packed as [type, id, time] triples, blocking
+	 * while the queue is full. The batch must not be modified afterwards. Fails if
+	 * the worker is no longer running instead of blocking forever.
+	 */
+	public void submit(int[] commands) throws InterruptedException {
+		if (commands.length % 3 != 0)
+			throw new IllegalArgumentException("Batch is not made of [type, id, time] triples : length="
+					+ commands.length);
+		if (closed)
+			throw new IllegalStateException("TokenService is closed");
+		while (!queue.offer(commands, 100, TimeUnit.MILLISECONDS)) {
+			if (!worker.isAlive())
+				throw new IllegalStateException("TokenService worker has stopped");
+		}
+	}
+
+	// Returns the active count after the last batch or sweep step, never blocks
+	public int getActiveTokens() {
+		return activeTokens;
+	}
+
+	// Returns the metrics of the engine, safe to read from any thread
+	public TokenMetrics getMetrics() {
+		return executor.getManager().getMetrics();
+	}
+
+	/*
+	 * Stops the sweeper, lets the worker execute every batch queued so far, evict
+	 * the tokens expired before the last command & waits for it to finish. If the calling thread is interrupted it stops
+	 * waiting & keeps its interrupt status.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		sweeper.shutdownNow();
+		try {
+			queue.put(STOP);
+			worker.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				int[] batch = queue.take();
+				if (batch == STOP) {
+					executor.sweep(executor.getMaxTime(), Integer.MAX_VALUE);
+					activeTokens = executor.getManager().getActiveTokens();
+					return;
+				}
+				try {
+					if (batch == SWEEP) {
+						sweepPending.set(false);
+						sweep();
+					} else {
+						execute(batch);
+					}
+				} catch (RuntimeException ex) {
+					logger.error(batch == SWEEP ? "Sweep failed" : "Batch failed", ex);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// Executes a batch followed by one eviction step, so eviction keeps pace with ingestion
+	private void execute(int[] batch) {
+		for (int i = 0; i < batch.length; i += 3)
+			executor.accept(batch[i], batch[i + 1], batch[i + 2]);
+		executor.sweep(executor.getMaxTime(), sweepBudget);
+		activeTokens = executor.getManager().getActiveTokens();
+	}
+
+	// Evicts in bounded steps up to the clock & stops early once batches are waiting
+	private void sweep() {
+		int now = clock.getAsInt();
+		boolean done;
+		do {
+			done = executor.sweep(now, sweepBudget);
+			activeTokens = executor.getManager().getActiveTokens();
+		} while (!done && queue.isEmpty());
+		if (!done)
+			logger.debug("Sweep up to time {} yielded to queued batches", now);
+	}
+}
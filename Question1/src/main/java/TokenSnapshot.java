@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Saves & restores the state of a CommandExecutor, so that a restarted engine
+ * only has to replay the commands that arrived after the snapshot. The file is
+ * written & read through memory mappings in this layout -
+ *
+ * int magic, int version, int expiryLimit, int maxTime, long commandsProcessed
+ * int liveTokens, then liveTokens x (int id, int expiry)
+ * int chunks, then chunks x (int chunk index, 1024 long words of TokenIdBitmap)
+ *
+ * Version 2 stores the words in the interleaved layout of TokenIdBitmap.
+ *
+ * Metrics are not part of the snapshot.
+ */
+public class TokenSnapshot {
+
+	// "TKSN"
+	private static final int MAGIC = 0x544B534E;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+	private static final int CHUNK_BYTES = Integer.BYTES + TokenIdBitmap.WORDS_PER_CHUNK * Long.BYTES;
+
+	private TokenSnapshot() {
+	}
+
+	/*
+	 * Writes the state of the executor to file. The snapshot is written to a
+	 * temporary file first & moved in place, so a crash while writing never
+	 * leaves a truncated snapshot behind.
+	 */
+	public static void write(CommandExecutor executor, Path file) throws IOException {
+		TokenManager manager = executor.getManager();
+		TokenStore tokenStore = manager.getTokenStore();
+		TokenIdBitmap createdTokens = manager.getCreatedTokens();
+
+		int chunks = 0;
+		for (int index = 0; index < TokenIdBitmap.CHUNK_COUNT; index++)
+			if (!isEmpty(createdTokens.getChunk(index)))
+				chunks++;
+		long size = HEADER_BYTES + Integer.BYTES + (long) tokenStore.liveCount() * 2 * Integer.BYTES
+				+ Integer.BYTES + (long) chunks * CHUNK_BYTES;
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Snapshot too large to map: " + size + " bytes");
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(manager.getExpiryLimit());
+			buffer.putInt(executor.getMaxTime());
+			buffer.putLong(executor.getCommandsProcessed());
+			buffer.putInt(tokenStore.liveCount());
+			tokenStore.forEach((id, expiry) -> {
+				buffer.putInt(id);
+				buffer.putInt(expiry);
+			});
+			buffer.putInt(chunks);
+			for (int index = 0; index < TokenIdBitmap.CHUNK_COUNT; index++) {
+				long[] chunk = createdTokens.getChunk(index);
+				if (!isEmpty(chunk)) {
+					buffer.putInt(index);
+					buffer.asLongBuffer().put(chunk);
+					buffer.position(buffer.position() + chunk.length * Long.BYTES);
+				}
+			}
+			buffer.force();
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Restores an executor from a snapshot file. Commands must be replayed from
+	 * position getCommandsProcessed() of the original command stream onwards.
+	 */
+	public static CommandExecutor load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_BYTES)
+				throw new IOException("Not a token snapshot: " + file);
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+		}
+	}
+
+	private static CommandExecutor read(ByteBuffer buffer, Path file) throws IOException {
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("Not a token snapshot: " + file);
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported token snapshot version " + version + ": " + file);
+		int expiryLimit = buffer.getInt();
+		int maxTime = buffer.getInt();
+		long commandsProcessed = buffer.getLong();
+
+		TokenManager manager = new TokenManager(expiryLimit);
+		int liveTokens = buffer.getInt();
+		for (int i = 0; i < liveTokens; i++)
+			manager.restoreToken(buffer.getInt(), buffer.getInt());
+		int chunks = buffer.getInt();
+		for (int i = 0; i < chunks; i++) {
+			int index = buffer.getInt();
+			LongBuffer words = buffer.asLongBuffer();
+			manager.getCreatedTokens().loadChunk(index, words);
+			buffer.position(buffer.position() + TokenIdBitmap.WORDS_PER_CHUNK * Long.BYTES);
+		}
+		return new CommandExecutor(manager, maxTime, commandsProcessed);
+	}
+
+	private static boolean isEmpty(long[] chunk) {
+		if (chunk == null)
+			return true;
+		for (long word : chunk)
+			if (word != 0)
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/*
+ * Primitive open-addressing store mapping token ID to expiry time. Keys and
+ * values live in two parallel int arrays probed linearly, so creating or
+ * resetting a token allocates nothing once the table has grown to size.
+ * Removal shifts following entries back instead of leaving tombstones, so the
+ * table only ever holds live tokens.
+ */
+public class TokenStore {
+
+	// Returned by get() for IDs not in the store
+	public static final int MISSING = Integer.MIN_VALUE;
+
+	// Key marking an unused slot. ID 0 is kept outside the table.
+	private static final int FREE = 0;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+	// Tables are grown once they are 3/4 full
+	private static final int MAX_LOAD_NUMERATOR = 3;
+	private static final int MAX_LOAD_DENOMINATOR = 4;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	// Number of occupied slots
+	private int size;
+	// Number of entries, including token ID 0
+	private int liveCount;
+	private int resizeThreshold;
+	// Value stored for token ID 0, MISSING if absent
+	private int zeroValue = MISSING;
+
+	public TokenStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	// Creates a store able to hold expectedTokens entries without growing
+	public TokenStore(int expectedTokens) {
+		allocate(tableSizeFor(expectedTokens));
+	}
+
+	// Returns expiry time of the token or MISSING
+	public int get(int id) {
+		if (id == FREE)
+			return zeroValue;
+		int slot = slotOf(id);
+		while (true) {
+			int key = keys[slot];
+			if (key == id)
+				return values[slot];
+			if (key == FREE)
+				return MISSING;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	// Checks if the token is in the store
+	public boolean contains(int id) {
+		return get(id) != MISSING;
+	}
+
+	/*
+	 * Stores the expiry time of a token, inserting it if not present. The value
+	 * must not be the MISSING marker.
+	 */
+	public void put(int id, int expiry) {
+		if (id == FREE) {
+			if (zeroValue == MISSING)
+				liveCount++;
+			zeroValue = expiry;
+			return;
+		}
+		int slot = slotOf(id);
+		while (true) {
+			int key = keys[slot];
+			if (key == id) {
+				values[slot] = expiry;
+				return;
+			}
+			if (key == FREE) {
+				keys[slot] = id;
+				values[slot] = expiry;
+				liveCount++;
+				if (++size > resizeThreshold)
+					rehash(keys.length << 1);
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	// Removes a token from the store. Does nothing if it is missing.
+	public void remove(int id) {
+		if (id == FREE) {
+			if (zeroValue != MISSING) {
+				zeroValue = MISSING;
+				liveCount--;
+			}
+			return;
+		}
+		int slot = slotOf(id);
+		while (true) {
+			int key = keys[slot];
+			if (key == id)
+				break;
+			if (key == FREE)
+				return;
+			slot = (slot + 1) & mask;
+		}
+		size--;
+		liveCount--;
+		// Shift back every following entry of the probe run that would become
+		// unreachable once its slot chain is broken by the gap
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = slotOf(keys[next]);
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = FREE;
+	}
+
+	// Receives the entries of the store
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(int id, int expiry);
+	}
+
+	// Passes every token & its expiry time to consumer, in no particular order
+	public void forEach(EntryConsumer consumer) {
+		if (zeroValue != MISSING)
+			consumer.accept(FREE, zeroValue);
+		for (int slot = 0; slot < keys.length; slot++)
+			if (keys[slot] != FREE)
+				consumer.accept(keys[slot], values[slot]);
+	}
+
+	// Returns the number of tokens in the store
+	public int liveCount() {
+		return liveCount;
+	}
+
+	// Removes all tokens, keeping the allocated tables for reuse
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+		liveCount = 0;
+		zeroValue = MISSING;
+	}
+
+	private int slotOf(int id) {
+		// Murmur3 finalizer spreads sequential IDs across the table
+		int h = id;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h & mask;
+	}
+
+	private void allocate(int tableSize) {
+		keys = new int[tableSize];
+		values = new int[tableSize];
+		mask = tableSize - 1;
+		resizeThreshold = (int) ((long) tableSize * MAX_LOAD_NUMERATOR / MAX_LOAD_DENOMINATOR);
+	}
+
+	private void rehash(int tableSize) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(tableSize);
+		for (int i = 0; i < oldKeys.length; i++) {
+			int key = oldKeys[i];
+			if (key != FREE) {
+				int slot = slotOf(key);
+				while (keys[slot] != FREE)
+					slot = (slot + 1) & mask;
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int tableSizeFor(int expectedTokens) {
+		long required = (long) Math.max(expectedTokens, 1) * MAX_LOAD_DENOMINATOR / MAX_LOAD_NUMERATOR + 1;
+		int tableSize = DEFAULT_CAPACITY;
+		while (tableSize < required && tableSize < MAX_CAPACITY)
+			tableSize <<= 1;
+		return tableSize;
+	}
+}
@@ -1,8 +1,21 @@
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class MainTest {
 
@@ -19,4 +32,170 @@ public class MainTest {
         int result = Main.processInputFile(testInput);
         assertEquals(214, result);
     }
+
+    @Test
+    public void readerHandlesWindowsLineEndingsAndTrailingSpaces() {
+        String input = "4\r\n4\r\n3\r\n0 1 1 \r\n0\t2 2\r\n1 1 5\r\n1 2 7";
+        MappedCommandReader reader = new MappedCommandReader(ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(4, reader.getExpiryLimit());
+        CommandExecutor executor = new CommandExecutor(new TokenManager(reader.getExpiryLimit()));
+        assertEquals(4, reader.readCommands(executor));
+        assertEquals(7, executor.getMaxTime());
+        assertEquals(1, executor.finish());
+    }
+
+    @Test
+    public void primitiveEntryPointsMatchListInput() {
+        int[][] commands = { { 0, 1, 1 }, { 0, 2, 2 }, { 1, 1, 5 }, { 1, 2, 7 } };
+        List<List<Integer>> boxed = new ArrayList<>();
+        for (int[] cmd : commands)
+            boxed.add(List.of(cmd[0], cmd[1], cmd[2]));
+        assertEquals(1, Solution.numberOfTokens(4, boxed));
+        assertEquals(1, Solution.numberOfTokens(4, commands));
+        assertEquals(1, Solution.numberOfTokens(4, new int[] { 0, 0, 1, 1 }, new int[] { 1, 2, 1, 2 },
+                new int[] { 1, 2, 5, 7 }));
+        assertEquals(1, Solution.numberOfTokens(4, IntBuffer.wrap(new int[] { 0, 1, 1, 0, 2, 2, 1, 1, 5, 1, 2, 7 })));
+    }
+
+    @Test
+    public void parallelReplayMatchesSerial() throws Exception {
+        MappedCommandReader reader = MappedCommandReader.open(Path.of(MainTest.class.getResource("/test_input_002.txt").toURI()));
+        CommandBuffer buffer = new CommandBuffer(reader.getCommandsRows());
+        reader.readCommands(buffer);
+        int[] types = new int[buffer.size()];
+        int[] ids = new int[buffer.size()];
+        int[] times = new int[buffer.size()];
+        for (int i = 0; i < buffer.size(); i++) {
+            types[i] = buffer.getType(i);
+            ids[i] = buffer.getId(i);
+            times[i] = buffer.getTime(i);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(214, ParallelCommandReplay.numberOfTokens(reader.getExpiryLimit(), types, ids, times, pool));
+            assertEquals(1, ParallelCommandReplay.numberOfTokens(4, new int[] { 0, 0, 1, 1, 0 },
+                    new int[] { 1, 2, 1, 2, 3 }, new int[] { 1, 2, 5, 7, 6 }, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void resumeFromSnapshotMatchesFullRun() throws Exception {
+        Path input = Path.of(MainTest.class.getResource("/test_input_002.txt").toURI());
+        MappedCommandReader reader = MappedCommandReader.open(input);
+        CommandExecutor executor = new CommandExecutor(new TokenManager(reader.getExpiryLimit()));
+        reader.readCommands((type, id, time) -> {
+            if (executor.getCommandsProcessed() < 40_000)
+                executor.accept(type, id, time);
+        });
+        Path snapshot = Files.createTempFile("tokens", ".snapshot");
+        try {
+            TokenSnapshot.write(executor, snapshot);
+            assertEquals(40_000, TokenSnapshot.load(snapshot).getCommandsProcessed());
+            assertEquals(214, Main.resumeInputFile(snapshot, input));
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    @Test
+    public void binaryLogMatchesTextFile() throws Exception {
+        Path input = Path.of(MainTest.class.getResource("/test_input_002.txt").toURI());
+        Path binary = Files.createTempFile("tokens", ".bin");
+        try {
+            long[] sizes = new long[2];
+            for (boolean deltaTime : new boolean[] { false, true }) {
+                int written = BinaryCommandLog.convert(input, binary, deltaTime);
+                BinaryCommandLog log = BinaryCommandLog.open(binary);
+                assertEquals(written, log.getCount());
+                assertEquals(deltaTime, log.isDeltaTime());
+                assertEquals(214, Main.processBinaryFile(binary));
+                sizes[deltaTime ? 1 : 0] = Files.size(binary);
+            }
+            assertTrue(sizes[1] < sizes[0]);
+        } finally {
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    @Test
+    public void failedConversionLeavesLogUnchanged() throws Exception {
+        Path input = Path.of(MainTest.class.getResource("/test_input_002.txt").toURI());
+        Path binary = Files.createTempFile("tokens", ".bin");
+        Path temp = binary.resolveSibling(binary.getFileName() + ".tmp");
+        try {
+            BinaryCommandLog.convert(input, binary, true);
+            byte[] before = Files.readAllBytes(binary);
+            MappedCommandReader reader = MappedCommandReader.open(input);
+            try (BinaryCommandLog.Writer writer = new BinaryCommandLog.Writer(binary, 4, true)) {
+                reader.readCommands((type, id, time) -> {
+                    if (writer.getCount() == 1_000)
+                        throw new IllegalStateException("reader failed");
+                    writer.accept(type, id, time);
+                });
+                writer.commit();
+            } catch (IllegalStateException expected) {
+                // The writer is closed without a commit
+            }
+            assertArrayEquals(before, Files.readAllBytes(binary));
+            assertFalse(Files.exists(temp));
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Test
+    public void batchRunnerProcessesEveryFile() throws Exception {
+        Path input = Path.of(MainTest.class.getResource("/test_input_002.txt").toURI());
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            Files.copy(input.resolveSibling("test_input_001.txt"), directory.resolve("a.txt"));
+            Files.copy(input, directory.resolve("b.txt"));
+            BinaryCommandLog.convert(input, directory.resolve("c.bin"), true);
+            Path output = directory.resolve("out");
+            List<BatchRunner.FileResult> results = new BatchRunner(2, output)
+                    .run(BatchRunner.collectInputs(List.of(directory.toString())));
+            assertEquals(3, results.size());
+            assertEquals(Main.processInputFile("/test_input_001.txt"), results.get(0).getResult());
+            assertEquals(214, results.get(1).getResult());
+            assertEquals(214, results.get(2).getResult());
+            assertEquals("214", Files.readString(output.resolve("c.bin.out")).trim());
+            assertTrue(Files.exists(output.resolve(BatchRunner.SUMMARY_FILE)));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void batchRunnerKeepsSameNamedFilesApart() throws Exception {
+        Path input = Path.of(MainTest.class.getResource("/test_input_002.txt").toURI());
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            Path x = Files.createDirectories(directory.resolve("x"));
+            Path y = Files.createDirectories(directory.resolve("y"));
+            Files.copy(input.resolveSibling("test_input_001.txt"), x.resolve("a.txt"));
+            Files.copy(input, y.resolve("a.txt"));
+            Files.copy(input, directory.resolve("b.txt"));
+            Path output = directory.resolve("out");
+            new BatchRunner(2, output)
+                    .run(List.of(x.resolve("a.txt"), y.resolve("a.txt"), directory.resolve("b.txt")));
+            assertEquals(String.valueOf(Main.processInputFile("/test_input_001.txt")),
+                    Files.readString(output.resolve("x/a.txt.out")).trim());
+            assertEquals("214", Files.readString(output.resolve("y/a.txt.out")).trim());
+            assertEquals("214", Files.readString(output.resolve("b.txt.out")).trim());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchOptionWithoutValueIsUsageError() throws Exception {
+        Main.main(new String[] { "a.txt", "-t" });
+    }
 }
@@ -0,0 +1,292 @@
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenManagerTest {
+
+    @Test
+    public void resetOnlyIfUnexpired() {
+        TokenManager manager = new TokenManager(4);
+        assertTrue(manager.createToken(1, 1));
+        assertTrue(manager.createToken(2, 2));
+        assertTrue(manager.resetToken(1, 5));
+        assertFalse(manager.resetToken(2, 7));
+        assertFalse(manager.resetToken(3, 7));
+        assertEquals(1, manager.calculateActiveTokens(7));
+    }
+
+    @Test
+    public void expiredIdIsNeverReused() {
+        TokenManager manager = new TokenManager(3);
+        assertTrue(manager.createToken(1, 1));
+        assertFalse(manager.createToken(1, 2));
+        assertEquals(0, manager.calculateActiveTokens(5));
+        assertFalse(manager.createToken(1, 5));
+        assertFalse(manager.resetToken(1, 5));
+    }
+
+    @Test
+    public void storeGrowsPastInitialCapacity() {
+        TokenStore store = new TokenStore();
+        for (int id = 0; id < 100_000; id++)
+            store.put(id, id + 10);
+        for (int id = 0; id < 100_000; id++)
+            assertEquals(id + 10, store.get(id));
+        assertEquals(TokenStore.MISSING, store.get(100_000));
+        for (int id = 0; id < 100_000; id += 2)
+            store.remove(id);
+        assertEquals(50_000, store.liveCount());
+        for (int id = 0; id < 100_000; id++)
+            assertEquals(id % 2 == 0 ? TokenStore.MISSING : id + 10, store.get(id));
+    }
+
+    @Test
+    public void bitmapTracksSparseAndDenseIds() {
+        TokenIdBitmap bitmap = new TokenIdBitmap();
+        assertTrue(bitmap.add(99_999_999));
+        assertFalse(bitmap.add(99_999_999));
+        assertTrue(bitmap.contains(99_999_999));
+        assertFalse(bitmap.contains(99_999_998));
+        assertTrue(bitmap.add(-1));
+        assertTrue(bitmap.contains(-1));
+        assertEquals(2 * 8192, bitmap.allocatedBytes());
+        for (int id = 0; id < 100_000_000; id += 997)
+            bitmap.add(id);
+        assertTrue(bitmap.allocatedBytes() <= 13_000_000);
+        bitmap.clear();
+        assertFalse(bitmap.contains(99_999_999));
+    }
+
+    @Test
+    public void consecutiveIdsAreSpreadOverStripes() {
+        int stripeMask = 15;
+        Set<Integer> stripes = new HashSet<>();
+        for (int id = 1_000; id < 1_016; id++)
+            stripes.add(ConcurrentTokenManager.stripeOf(id, stripeMask));
+        assertTrue(stripes.size() >= 8);
+        // IDs sharing a bitmap line share the stripe that writes it
+        for (int id = 1_000; id < 1_016; id++) {
+            assertEquals(TokenIdBitmap.lineOf(id), TokenIdBitmap.lineOf(id + 128));
+            assertEquals(ConcurrentTokenManager.stripeOf(id, stripeMask),
+                    ConcurrentTokenManager.stripeOf(id + 1_024, stripeMask));
+        }
+
+        TokenIdBitmap bitmap = new TokenIdBitmap();
+        for (int id = 0; id < 65_536 * 2; id += 3)
+            assertTrue(bitmap.add(id));
+        for (int id = 0; id < 65_536 * 2; id++)
+            assertEquals(id % 3 == 0, bitmap.contains(id));
+    }
+
+    @Test
+    public void repeatedQueriesOnlyExpireDueTokens() {
+        TokenManager manager = new TokenManager(5);
+        assertTrue(manager.createToken(1, 1));
+        assertTrue(manager.createToken(2, 2));
+        assertTrue(manager.createToken(3, 3));
+        assertTrue(manager.resetToken(1, 6));
+        assertEquals(3, manager.calculateActiveTokens(6));
+        assertEquals(2, manager.calculateActiveTokens(8));
+        assertTrue(manager.resetToken(3, 8));
+        assertEquals(2, manager.calculateActiveTokens(11));
+        assertEquals(1, manager.calculateActiveTokens(12));
+        assertEquals(0, manager.calculateActiveTokens(14));
+    }
+
+    @Test
+    public void concurrentCreatesSucceedOncePerId() throws InterruptedException {
+        ConcurrentTokenManager manager = new ConcurrentTokenManager(1000, 8);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger reset = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int id = 1; id <= 10_000; id++) {
+                    if (manager.createToken(id, 1))
+                        created.incrementAndGet();
+                    if (manager.resetToken(id, 2))
+                        reset.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(10_000, created.get());
+        assertEquals(40_000, reset.get());
+        assertEquals(10_000, manager.calculateActiveTokens(1002));
+        assertEquals(0, manager.calculateActiveTokens(1003));
+        assertFalse(manager.createToken(5, 1003));
+    }
+
+    @Test
+    public void activeCountFollowsTheStream() {
+        CommandExecutor executor = new CommandExecutor(new TokenManager(4));
+        executor.accept(0, 1, 1);
+        executor.accept(0, 2, 2);
+        assertEquals(2, executor.getActiveTokens());
+        executor.accept(1, 1, 5);
+        assertEquals(2, executor.getActiveTokens());
+        executor.accept(1, 2, 7);
+        assertEquals(1, executor.getActiveTokens());
+        assertEquals(1, executor.getActiveTokens(9));
+        assertEquals(0, executor.getActiveTokens(10));
+        executor.accept(1, 1, 9);
+        assertEquals(0, executor.finish());
+    }
+
+    @Test
+    public void timelineMatchesStreamingReplay() {
+        Random random = new Random(42);
+        int[][] commands = new int[5_000][];
+        int time = 1;
+        for (int i = 0; i < commands.length; i++) {
+            time += random.nextInt(3);
+            commands[i] = new int[] { random.nextInt(3) == 0 ? 0 : 1, 1 + random.nextInt(500), time };
+        }
+        int[] queryTimes = new int[200];
+        for (int q = 0; q < queryTimes.length; q++)
+            queryTimes[q] = q * (time + 60) / queryTimes.length;
+
+        int[] answers = Solution.numberOfTokensAt(50, commands, queryTimes);
+        for (int q = 0; q < queryTimes.length; q++) {
+            CommandExecutor executor = new CommandExecutor(new TokenManager(50));
+            for (int[] cmd : commands)
+                if (cmd[2] <= queryTimes[q])
+                    executor.accept(cmd[0], cmd[1], cmd[2]);
+            assertEquals("T=" + queryTimes[q], executor.getActiveTokens(queryTimes[q]), answers[q]);
+        }
+    }
+
+    @Test
+    public void metricsCountEveryOutcome() {
+        CommandExecutor executor = new CommandExecutor(new TokenManager(4));
+        executor.getManager().getMetrics().setLatencyEnabled(true);
+        executor.accept(0, 1, 1);
+        executor.accept(0, 1, 2);
+        executor.accept(1, 1, 3);
+        executor.accept(1, 2, 3);
+        executor.accept(0, 3, 2);
+        executor.accept(2, 3, 4);
+        executor.finish();
+        TokenMetrics.Snapshot snapshot = executor.getManager().getMetrics().snapshot();
+        assertEquals(1, snapshot.getCreated());
+        assertEquals(1, snapshot.getDuplicateCreates());
+        assertEquals(1, snapshot.getResetsAccepted());
+        assertEquals(1, snapshot.getResetsIgnored());
+        assertEquals(1, snapshot.getOutOfOrder());
+        assertEquals(1, snapshot.getInvalidCommands());
+        assertEquals(2, snapshot.getLatency(TokenMetrics.Operation.CREATE).getCount());
+        assertEquals(1, snapshot.getLatency(TokenMetrics.Operation.QUERY).getCount());
+        assertEquals(2, snapshot.getLatency(TokenMetrics.Operation.RESET).getCount());
+    }
+
+    @Test
+    public void latencySamplingIsOptIn() {
+        CommandExecutor executor = new CommandExecutor(new TokenManager(4));
+        executor.accept(0, 1, 1);
+        executor.accept(1, 1, 3);
+        executor.finish();
+        TokenMetrics.Snapshot snapshot = executor.getManager().getMetrics().snapshot();
+        assertEquals(1, snapshot.getCreated());
+        assertEquals(1, snapshot.getResetsAccepted());
+        assertEquals(0, snapshot.getLatency(TokenMetrics.Operation.CREATE).getCount());
+        assertEquals(0, snapshot.getLatency(TokenMetrics.Operation.RESET).getCount());
+    }
+
+    @Test
+    public void reorderBufferRestoresTimeOrderWithinLateness() {
+        int[][] inOrder = { { 0, 1, 1 }, { 0, 2, 2 }, { 1, 1, 5 }, { 1, 2, 7 } };
+        int[][] shuffled = { { 0, 2, 2 }, { 0, 1, 1 }, { 1, 2, 7 }, { 1, 1, 5 } };
+        assertEquals(1, Solution.numberOfTokens(4, inOrder));
+        assertEquals(0, Solution.numberOfTokens(4, shuffled));
+        assertEquals(1, Solution.numberOfTokens(4, shuffled, 2));
+
+        CommandBuffer released = new CommandBuffer();
+        ReorderingCommandSink reorder = new ReorderingCommandSink(released, 3);
+        reorder.accept(0, 1, 10);
+        reorder.accept(0, 2, 8);
+        reorder.accept(1, 1, 10);
+        reorder.accept(0, 3, 14);
+        assertEquals(3, released.size());
+        reorder.accept(0, 4, 9);
+        assertEquals(1, reorder.getLateCommands());
+        reorder.flush();
+        assertEquals(4, released.size());
+        assertEquals(2, released.getId(0));
+        assertEquals(0, released.getType(1));
+        assertEquals(1, released.getType(2));
+        assertEquals(3, released.getId(3));
+    }
+
+    @Test
+    public void sweepEvictsInBudgetedSteps() {
+        CommandExecutor executor = new CommandExecutor(new TokenManager(4), false);
+        executor.accept(0, 1, 1);
+        executor.accept(0, 2, 1);
+        executor.accept(0, 3, 2);
+        executor.accept(1, 3, 10);
+        // Nothing is evicted on accept & resets still see that token 3 expired
+        assertEquals(3, executor.getActiveTokens());
+        assertFalse(executor.sweep(0, 1));
+        assertEquals(2, executor.getActiveTokens());
+        assertTrue(executor.sweep(0, 2));
+        assertEquals(0, executor.getActiveTokens());
+        assertEquals(0, executor.getManager().getMetrics().snapshot().getResetsAccepted());
+    }
+
+    @Test
+    public void serviceEvictsExpiredTokensWhileIdle() throws InterruptedException {
+        AtomicInteger clock = new AtomicInteger(1);
+        TokenService service = new TokenService(4, 8, clock::get, 5, 2);
+        try {
+            service.submit(new int[] { 0, 1, 1, 0, 2, 1, 0, 3, 2, 0, 4, 2, 0, 5, 3 });
+            service.submit(new int[] { 1, 5, 6 });
+            awaitActiveTokens(service, 3);
+
+            // No commands arrive, the sweeps alone expire the remaining tokens
+            clock.set(100);
+            awaitActiveTokens(service, 0);
+
+            // Commands stamped before the last sweep are out of order
+            service.submit(new int[] { 0, 6, 50, 0, 7, 100 });
+        } finally {
+            service.close();
+        }
+        assertEquals(1, service.getActiveTokens());
+        assertEquals(1, service.getMetrics().snapshot().getOutOfOrder());
+    }
+
+    private static void awaitActiveTokens(TokenService service, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.getActiveTokens() != expected && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        assertEquals(expected, service.getActiveTokens());
+    }
+
+    @Test
+    public void serviceWorkerSurvivesFailedSweep() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        TokenService service = new TokenService(4, 8, () -> {
+            if (calls.incrementAndGet() == 1)
+                throw new IllegalStateException("clock unavailable");
+            return 0;
+        }, 1, 2);
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (calls.get() < 2 && System.currentTimeMillis() < deadline)
+                Thread.sleep(5);
+            service.submit(new int[] { 0, 1, 1, 0, 2, 2 });
+        } finally {
+            service.close();
+        }
+        assertEquals(2, service.getActiveTokens());
+    }
+}
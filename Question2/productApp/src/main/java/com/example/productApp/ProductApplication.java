@@ -2,11 +2,13 @@ package com.example.productApp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 
 /**
  * @author udhoji.shreya : Product Application
  */
 @SpringBootApplication
+@EnableCaching
 public class ProductApplication {
 
 	public static void main(String[] args) {
@@ -1,12 +1,16 @@
 package com.example.productApp.controller;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -14,8 +18,11 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.productApp.dto.CategoryDto;
+import com.example.productApp.dto.CursorPage;
 import com.example.productApp.dto.ProductDto;
-import com.example.productApp.dto.Result;
+import com.example.productApp.dto.ImportJob;
+import com.example.productApp.dto.WriteMode;
+import com.example.productApp.service.ImportJobService;
 import com.example.productApp.service.ProductService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,21 +38,47 @@ public class ProductAppController {
 	@Autowired
 	private ProductService productService;
 
+	@Autowired
+	private ImportJobService importJobService;
+
 	/**
-	 * Invokes service layer to process CSV data & store CSV data into Database
-	 * tables in normalized form.
+	 * Starts processing CSV data in the background & storing CSV data into
+	 * Database tables in normalized form.
 	 * 
-	 * @return Success/Error as per business logic.
+	 * @return 202 Accepted with the job to poll, 429 if too many imports are
+	 *         running, 409 if the file is already being imported.
 	 */
 	@PostMapping("/process-csv")
-	@Operation(summary = "Start CSV processing", description = "Parses CSV and writes categories & products to DB")
+	@Operation(summary = "Start CSV processing", description = "Starts parsing CSV and writing categories & products to DB. "
+			+ "Returns a job ID to poll for progress. Supported write modes: JPA (default), COPY, "
+			+ "UPSERT (updates existing codes whose content changed). "
+			+ "With resume=true an interrupted import continues after its last committed record")
 	@ResponseBody
-	public ResponseEntity<Result> processCsvData() {
-		Result result = productService.loadCsvData();
-		if (result.getErrors().size() > 0)
-			return ResponseEntity.status(500).body(result);
-		return ResponseEntity.ok(result);
+	public ResponseEntity<ImportJob> processCsvData(@RequestParam(defaultValue = "JPA") WriteMode writeMode,
+			@RequestParam(defaultValue = "false") boolean resume) {
+		try {
+			ImportJob job = importJobService.submit(writeMode, resume);
+			return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+		} catch (RejectedExecutionException e) {
+			return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		}
+	}
 
+	/**
+	 * Reports the progress of a CSV import.
+	 * 
+	 * @return 200 OK with phase, records processed, throughput & the Result once
+	 *         finished. 404 if the job is unknown.
+	 */
+	@GetMapping("/process-csv/{jobId}")
+	@Operation(summary = "CSV processing status", description = "Returns phase, records processed, throughput and the final result of a CSV import")
+	public ResponseEntity<ImportJob> getCsvJob(@PathVariable String jobId) {
+		ImportJob job = importJobService.getJob(jobId);
+		if (job == null)
+			return ResponseEntity.notFound().build();
+		return ResponseEntity.ok(job);
 	}
 
 	/**
@@ -67,7 +100,7 @@ public class ProductAppController {
 	@GetMapping("/get/products")
 	@Operation(summary = "Search products", description = "Search products. Define filters and/or sorting criteria (optional). "
 			+ "Supported sort criteria: id, name, productCode, categoryCode, creationDate. "
-			+ "Supported sort order: asc, desc")
+			+ "Supported sort order: asc, desc. Pages hold at most 1000 entries")
 	public ResponseEntity<Page<ProductDto>> getProducts(@RequestParam(defaultValue = "0") int page,
 			@RequestParam(defaultValue = "10") int size, @RequestParam(defaultValue = "id,asc") String sort,
 			@RequestParam(required = false) Long productCode) {
@@ -75,7 +108,7 @@ public class ProductAppController {
 		Sort sorting = Sort.by(sortParts[0]);
 		if (sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc"))
 			sorting = sorting.descending();
-		Pageable pageable = PageRequest.of(page, size, sorting);
+		Pageable pageable = PageRequest.of(page, Math.min(size, ProductService.MAX_PAGE_SIZE), sorting);
 		Page<ProductDto> result = productService.getProducts(productCode, pageable);
 		return ResponseEntity.ok(result);
 	}
@@ -88,7 +121,7 @@ public class ProductAppController {
 	@GetMapping("/get/productsByCategory")
 	@Operation(summary = "Search products", description = "Search products by category code. Define filters and/or sorting criteria (optional). "
 			+ "Supported sort criteria: id, name, productCode, categoryCode, creationDate. "
-			+ "Supported sort order: asc, desc")
+			+ "Supported sort order: asc, desc. Pages hold at most 1000 entries")
 	public ResponseEntity<Page<ProductDto>> getProductsByCategory(@RequestParam(defaultValue = "0") int page,
 			@RequestParam(defaultValue = "10") int size, @RequestParam(defaultValue = "id,asc") String sort,
 			@RequestParam Integer categoryCode) {
@@ -96,7 +129,7 @@ public class ProductAppController {
 		Sort sorting = Sort.by(sortParts[0]);
 		if (sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc"))
 			sorting = sorting.descending();
-		Pageable pageable = PageRequest.of(page, size, sorting);
+		Pageable pageable = PageRequest.of(page, Math.min(size, ProductService.MAX_PAGE_SIZE), sorting);
 		Page<ProductDto> result = productService.getProductsByCategory(categoryCode, pageable);
 		return ResponseEntity.ok(result);
 	}
@@ -109,7 +142,7 @@ public class ProductAppController {
 	@GetMapping("/get/categories")
 	@Operation(summary = "Search categories", description = "Search categories. Define filters and/or sorting criteria (optional)."
 			+ "Supported sort criteria: id, categoryName, categoryCode, creationDate. "
-			+ "Supported sort order: asc, desc")
+			+ "Supported sort order: asc, desc. Pages hold at most 1000 entries")
 	public ResponseEntity<Page<CategoryDto>> getCategories(@RequestParam(defaultValue = "0") int page,
 			@RequestParam(defaultValue = "10") int size, @RequestParam(defaultValue = "id,asc") String sort,
 			@RequestParam(required = false) Integer categoryCode) {
@@ -117,8 +150,56 @@ public class ProductAppController {
 		Sort sorting = Sort.by(sortParts[0]);
 		if (sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc"))
 			sorting = sorting.descending();
-		Pageable pageable = PageRequest.of(page, size, sorting);
+		Pageable pageable = PageRequest.of(page, Math.min(size, ProductService.MAX_PAGE_SIZE), sorting);
 		Page<CategoryDto> result = productService.getCategories(categoryCode, pageable);
 		return ResponseEntity.ok(result);
 	}
+
+	/**
+	 * Walk products with a cursor. Every page continues after the last entry of
+	 * the previous one, without counting all products.
+	 * 
+	 * @return 200 OK with results & the cursor of the next page, 400 for an
+	 *         unsupported sort criteria or an invalid cursor
+	 */
+	@GetMapping("/get/products/cursor")
+	@Operation(summary = "Walk products with a cursor", description = "Lists products, optionally of one category, in pages "
+			+ "that continue after the nextCursor of the previous page. No total count is returned. "
+			+ "Supported sort criteria: id, name, productCode, categoryCode, creationDate. "
+			+ "Supported sort order: asc, desc. Pages hold at most 1000 entries")
+	public ResponseEntity<CursorPage<ProductDto>> getProductsAfter(@RequestParam(defaultValue = "10") int size,
+			@RequestParam(defaultValue = "id,asc") String sort, @RequestParam(required = false) Integer categoryCode,
+			@RequestParam(required = false) String cursor) {
+		String[] sortParts = sort.split(",");
+		boolean descending = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc");
+		try {
+			return ResponseEntity
+					.ok(productService.getProductsAfter(categoryCode, sortParts[0], descending, size, cursor));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+
+	/**
+	 * Walk categories with a cursor. Every page continues after the last entry of
+	 * the previous one, without counting all categories.
+	 * 
+	 * @return 200 OK with results & the cursor of the next page, 400 for an
+	 *         unsupported sort criteria or an invalid cursor
+	 */
+	@GetMapping("/get/categories/cursor")
+	@Operation(summary = "Walk categories with a cursor", description = "Lists categories in pages that continue after the "
+			+ "nextCursor of the previous page. No total count is returned. "
+			+ "Supported sort criteria: id, categoryName, categoryCode, creationDate. "
+			+ "Supported sort order: asc, desc. Pages hold at most 1000 entries")
+	public ResponseEntity<CursorPage<CategoryDto>> getCategoriesAfter(@RequestParam(defaultValue = "10") int size,
+			@RequestParam(defaultValue = "id,asc") String sort, @RequestParam(required = false) String cursor) {
+		String[] sortParts = sort.split(",");
+		boolean descending = sortParts.length > 1 && sortParts[1].equalsIgnoreCase("desc");
+		try {
+			return ResponseEntity.ok(productService.getCategoriesAfter(sortParts[0], descending, size, cursor));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
 }
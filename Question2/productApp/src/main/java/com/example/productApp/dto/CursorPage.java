@@ -0,0 +1,32 @@
+package com.example.productApp.dto;
+
+import java.util.List;
+
+/**
+ * @author udhoji.shreya - One page of a keyset listing. nextCursor continues the
+ *         listing after the last entry & is null on the last page.
+ *
+ */
+public class CursorPage<T> {
+
+	private final List<T> content;
+	private final String nextCursor;
+
+	public CursorPage(List<T> content, String nextCursor) {
+		this.content = content;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<T> getContent() {
+		return content;
+	}
+
+	public int getSize() {
+		return content.size();
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
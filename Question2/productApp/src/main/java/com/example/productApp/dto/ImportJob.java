@@ -0,0 +1,94 @@
+package com.example.productApp.dto;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author udhoji.shreya - State of an asynchronous CSV import, polled by
+ *         clients while the import runs
+ *
+ */
+public class ImportJob {
+
+	public enum Phase {
+		QUEUED, CATEGORIES, PRODUCTS, COMPLETED, FAILED
+	}
+
+	private final String id;
+	private final WriteMode writeMode;
+	// Continue from the checkpoint of an interrupted import
+	private final boolean resume;
+	private volatile Phase phase = Phase.QUEUED;
+	// CSV records processed so far, counted once per phase
+	private final AtomicLong recordsProcessed = new AtomicLong();
+	private volatile long startNanos;
+	private volatile long endNanos;
+	private volatile Result result;
+
+	public ImportJob(String id, WriteMode writeMode) {
+		this(id, writeMode, false);
+	}
+
+	public ImportJob(String id, WriteMode writeMode, boolean resume) {
+		this.id = id;
+		this.writeMode = writeMode;
+		this.resume = resume;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public WriteMode getWriteMode() {
+		return writeMode;
+	}
+
+	public boolean isResume() {
+		return resume;
+	}
+
+	public Phase getPhase() {
+		return phase;
+	}
+
+	public void setPhase(Phase phase) {
+		if (this.phase == Phase.QUEUED)
+			startNanos = System.nanoTime();
+		if (phase == Phase.COMPLETED || phase == Phase.FAILED)
+			endNanos = System.nanoTime();
+		this.phase = phase;
+	}
+
+	public boolean isFinished() {
+		return phase == Phase.COMPLETED || phase == Phase.FAILED;
+	}
+
+	public long getRecordsProcessed() {
+		return recordsProcessed.get();
+	}
+
+	public void addRecordsProcessed(int records) {
+		recordsProcessed.addAndGet(records);
+	}
+
+	public long getElapsedMillis() {
+		if (startNanos == 0)
+			return 0;
+		return ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1_000_000;
+	}
+
+	// Records processed per second since the import started
+	public double getRecordsPerSecond() {
+		long elapsedMillis = getElapsedMillis();
+		return elapsedMillis > 0 ? getRecordsProcessed() * 1000.0 / elapsedMillis : 0;
+	}
+
+	// Returns the Result once the import has finished, null before
+	public Result getResult() {
+		return result;
+	}
+
+	public void setResult(Result result) {
+		this.result = result;
+	}
+
+}
@@ -1,38 +1,72 @@
 package com.example.productApp.dto;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+
+/**
+ * Outcome of a CSV import. Updated concurrently by the stages of the import
+ * pipeline.
+ * 
+ * Errors & skipped records are counted in full, but only a sample of their
+ * messages is kept, so the Result stays small however large the file is -
+ * the first ERROR_SAMPLES errors & the first SKIPPED_SAMPLES_PER_REASON
+ * records of every skip reason.
+ */
 public class Result {
+
+	public static final int ERROR_SAMPLES = 100;
+	public static final int SKIPPED_SAMPLES_PER_REASON = 10;
+
 	private int skippedProducts = 0;
 	private int skippedCategories = 0;
 	private int createdProducts = 0;
 	private int createdCategories = 0;
+	private int updatedProducts = 0;
+	private int updatedCategories = 0;
+	private int unchangedProducts = 0;
+	private int unchangedCategories = 0;
+	private int errorCount = 0;
 	private List<String> errors = new ArrayList<>();
+	// Skipped records per reason, in the order the reasons first occurred
+	private Map<String, Integer> skippedReasonCounts = new LinkedHashMap<String, Integer>();
 	private List<String> skippedReasons = new ArrayList<String>();
+	private WriteMode writeMode;
+	private String resumedPhase;
+	private long resumedAfterRecord;
+	private long durationMillis;
+	private double rowsPerSecond;
 
-	public void incrementCreatedProducts() {
+	public synchronized void incrementCreatedProducts() {
 		++createdProducts;
 	}
 
-	public void incrementCreatedCategories() {
+	public synchronized void incrementCreatedCategories() {
 		++createdCategories;
 	}
 
-	public void incrementSkippedProducts() {
+	public synchronized void incrementSkippedProducts() {
 		++skippedProducts;
 	}
 
-	public void incrementSkippedCategories() {
+	public synchronized void incrementSkippedCategories() {
 		++skippedCategories;
 	}
 
+	// Returns the first ERROR_SAMPLES errors
 	public List<String> getErrors() {
 		return errors;
 	}
 
-	public void addErrors(String error) {
-		this.errors.add(error);
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	public synchronized void addErrors(String error) {
+		++errorCount;
+		if (errors.size() < ERROR_SAMPLES)
+			this.errors.add(error);
 	}
 
 	public int getSkippedProducts() {
@@ -51,20 +85,98 @@ public class Result {
 		return createdCategories;
 	}
 
-	public void decrementCreatedProducts() {
+	public synchronized void decrementCreatedProducts() {
 		--createdProducts;
 	}
 
-	public void decrementCreatedCategories() {
+	public synchronized void decrementCreatedCategories() {
 		--createdCategories;
 	}
 
+	// Moves upserted categories that already existed from created to updated or unchanged
+	public synchronized void recordUpsertedCategories(int updated, int unchanged) {
+		createdCategories -= updated + unchanged;
+		updatedCategories += updated;
+		unchangedCategories += unchanged;
+	}
+
+	// Moves upserted products that already existed from created to updated or unchanged
+	public synchronized void recordUpsertedProducts(int updated, int unchanged) {
+		createdProducts -= updated + unchanged;
+		updatedProducts += updated;
+		unchangedProducts += unchanged;
+	}
+
+	public int getUpdatedProducts() {
+		return updatedProducts;
+	}
+
+	public int getUpdatedCategories() {
+		return updatedCategories;
+	}
+
+	public int getUnchangedProducts() {
+		return unchangedProducts;
+	}
+
+	public int getUnchangedCategories() {
+		return unchangedCategories;
+	}
+
+	// Returns the first SKIPPED_SAMPLES_PER_REASON details of every reason
 	public List<String> getSkippedReasons() {
 		return skippedReasons;
 	}
 
-	public void addSkippedReasons(String skipReason) {
-		skippedReasons.add(skipReason);
+	public Map<String, Integer> getSkippedReasonCounts() {
+		return skippedReasonCounts;
+	}
+
+	/*
+	 * Counts a skipped record under reason, a short text shared by all records
+	 * skipped for the same cause. detail describes the record.
+	 */
+	public synchronized void addSkippedReasons(String reason, String detail) {
+		int count = skippedReasonCounts.merge(reason, 1, Integer::sum);
+		if (count <= SKIPPED_SAMPLES_PER_REASON)
+			skippedReasons.add(detail);
+	}
+
+	public WriteMode getWriteMode() {
+		return writeMode;
+	}
+
+	public void setWriteMode(WriteMode writeMode) {
+		this.writeMode = writeMode;
+	}
+
+	public String getResumedPhase() {
+		return resumedPhase;
+	}
+
+	// Returns the last record that had committed before the import resumed
+	public long getResumedAfterRecord() {
+		return resumedAfterRecord;
+	}
+
+	public void setResumedFrom(String resumedPhase, long resumedAfterRecord) {
+		this.resumedPhase = resumedPhase;
+		this.resumedAfterRecord = resumedAfterRecord;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public double getRowsPerSecond() {
+		return rowsPerSecond;
+	}
+
+	// Records the import duration & derives the created & updated rows per second
+	public synchronized void setDuration(long nanos) {
+		this.durationMillis = nanos / 1_000_000;
+		int rows = createdProducts + createdCategories + updatedProducts + updatedCategories;
+		this.rowsPerSecond = nanos > 0 ? rows * 1e9 / nanos : 0;
 	}
 
 }
@@ -0,0 +1,17 @@
+package com.example.productApp.dto;
+
+/**
+ * @author udhoji.shreya - How an import writes new rows to the Database
+ *
+ */
+public enum WriteMode {
+	/** Inserts entities through the JPA repositories, one statement per row */
+	JPA,
+	/** Streams rows into the tables with the PostgreSQL COPY protocol */
+	COPY,
+	/**
+	 * Inserts new rows & updates existing rows whose content hash changed with
+	 * INSERT ... ON CONFLICT (code) DO UPDATE
+	 */
+	UPSERT
+}
@@ -31,6 +31,9 @@ public class Category {
 	@Column
 	private Date creationDate;
 
+	@Column
+	private Long contentHash;
+
 	public Integer getId() {
 		return id;
 	}
@@ -62,4 +65,12 @@ public class Category {
 	public void setCreationDate(Date creationDate) {
 		this.creationDate = creationDate;
 	}
+
+	public Long getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(Long contentHash) {
+		this.contentHash = contentHash;
+	}
 }
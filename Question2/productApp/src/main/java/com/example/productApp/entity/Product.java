@@ -34,6 +34,9 @@ public class Product {
 	@Column
 	private Date creationDate;
 
+	@Column
+	private Long contentHash;
+
 	public Integer getId() {
 		return id;
 	}
@@ -73,4 +76,12 @@ public class Product {
 	public void setCreationDate(Date creationDate) {
 		this.creationDate = creationDate;
 	}
+
+	public Long getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(Long contentHash) {
+		this.contentHash = contentHash;
+	}
 }
@@ -0,0 +1,71 @@
+package com.example.productApp.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Repository;
+
+import com.example.productApp.util.KeysetCursor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * @author udhoji.shreya - Keyset (seek) pagination. Instead of OFFSET & COUNT,
+ *         every page continues after the sort value & id of the last entry of
+ *         the previous page, so it is read straight from a (sort field, id)
+ *         index & costs the same at any depth. The position is a row-value
+ *         comparison (sort field, id) > (value, id), which the Database turns
+ *         into a single index range. Sort & filter fields are inserted into the
+ *         query & must be checked by the caller.
+ *
+ */
+@Repository
+public class KeysetRepository {
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * @param entityClass Product or Category
+	 * @param filterField field that must equal filterValue, null for none
+	 * @param filterValue
+	 * @param sortField   entity field to sort by, ties are sorted by id
+	 * @param descending
+	 * @param after       cursor of the previous page, null for the first page
+	 * @param limit       maximum number of entities
+	 * @return entities following the cursor in sort order
+	 */
+	public <T> List<T> findPage(Class<T> entityClass, String filterField, Object filterValue, String sortField,
+			boolean descending, KeysetCursor after, int limit) {
+		String comparison = descending ? " < " : " > ";
+		String direction = descending ? " DESC" : " ASC";
+		List<String> conditions = new ArrayList<String>();
+		if (filterField != null)
+			conditions.add("e." + filterField + " = :filterValue");
+		if (after != null) {
+			if ("id".equals(sortField))
+				conditions.add("e.id" + comparison + ":afterId");
+			else
+				conditions.add("(e." + sortField + ", e.id)" + comparison + "(:afterValue, :afterId)");
+		}
+
+		StringBuilder jpql = new StringBuilder("SELECT e FROM ").append(entityClass.getSimpleName()).append(" e");
+		if (!conditions.isEmpty())
+			jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+		jpql.append(" ORDER BY e.").append(sortField).append(direction);
+		if (!"id".equals(sortField))
+			jpql.append(", e.id").append(direction);
+
+		TypedQuery<T> query = entityManager.createQuery(jpql.toString(), entityClass);
+		if (filterField != null)
+			query.setParameter("filterValue", filterValue);
+		if (after != null) {
+			query.setParameter("afterId", after.getId());
+			if (!"id".equals(sortField))
+				query.setParameter("afterValue", after.getValue());
+		}
+		return query.setMaxResults(limit).getResultList();
+	}
+}
@@ -0,0 +1,189 @@
+package com.example.productApp.service;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import com.example.productApp.entity.Category;
+import com.example.productApp.entity.Product;
+
+/**
+ * Writes validated rows into the category & product tables with the PostgreSQL
+ * COPY protocol. A chunk of rows is sent as one CSV stream in a single round
+ * trip, instead of one INSERT per row as with IDENTITY keys under JPA. Upserts
+ * send a chunk as one array parameter per column in a single statement. The
+ * connection of the current transaction is used, so written rows commit & roll
+ * back together with the rest of the import.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Component
+public class BulkWriter {
+
+	private static final String COPY_CATEGORIES = "COPY category (code, name, creation_date, content_hash) FROM STDIN (FORMAT csv)";
+	private static final String COPY_PRODUCTS = "COPY product (code, name, category_code, creation_date, content_hash) FROM STDIN (FORMAT csv)";
+	// Rows with an unchanged content hash are not rewritten. (xmax = 0) tells inserted from updated rows.
+	private static final String UPSERT_CATEGORIES = "INSERT INTO category (code, name, creation_date, content_hash) "
+			+ "SELECT * FROM unnest(?::integer[], ?::varchar[], ?::date[], ?::bigint[]) "
+			+ "ON CONFLICT (code) DO UPDATE SET name = EXCLUDED.name, content_hash = EXCLUDED.content_hash "
+			+ "WHERE category.content_hash IS DISTINCT FROM EXCLUDED.content_hash RETURNING (xmax = 0)";
+	private static final String UPSERT_PRODUCTS = "INSERT INTO product (code, name, category_code, creation_date, content_hash) "
+			+ "SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::integer[], ?::date[], ?::bigint[]) "
+			+ "ON CONFLICT (code) DO UPDATE SET name = EXCLUDED.name, category_code = EXCLUDED.category_code, "
+			+ "content_hash = EXCLUDED.content_hash "
+			+ "WHERE product.content_hash IS DISTINCT FROM EXCLUDED.content_hash RETURNING (xmax = 0)";
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/*
+	 * Copies all categories into Database table. Returns the number of rows
+	 * written.
+	 */
+	public long copyCategories(Collection<Category> categoryList) {
+		if (categoryList.isEmpty())
+			return 0;
+		StringBuilder rows = new StringBuilder();
+		try (CSVPrinter printer = new CSVPrinter(rows, CSVFormat.DEFAULT)) {
+			for (Category category : categoryList)
+				printer.printRecord(category.getCategoryCode(), category.getCategoryName(),
+						category.getCreationDate(), category.getContentHash());
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to encode categories for COPY", e);
+		}
+		return copy(COPY_CATEGORIES, rows);
+	}
+
+	/*
+	 * Copies all products into Database table. Returns the number of rows written.
+	 */
+	public long copyProducts(Collection<Product> productList) {
+		if (productList.isEmpty())
+			return 0;
+		StringBuilder rows = new StringBuilder();
+		try (CSVPrinter printer = new CSVPrinter(rows, CSVFormat.DEFAULT)) {
+			for (Product product : productList)
+				printer.printRecord(product.getProductCode(), product.getName(), product.getCategoryCode(),
+						product.getCreationDate(), product.getContentHash());
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to encode products for COPY", e);
+		}
+		return copy(COPY_PRODUCTS, rows);
+	}
+
+	/*
+	 * Inserts new categories & updates the name of existing ones whose content
+	 * hash changed.
+	 */
+	public UpsertCount upsertCategories(Collection<Category> categoryList) {
+		int size = categoryList.size();
+		Object[] codes = new Object[size];
+		Object[] names = new Object[size];
+		Object[] creationDates = new Object[size];
+		Object[] hashes = new Object[size];
+		int i = 0;
+		for (Category category : categoryList) {
+			codes[i] = category.getCategoryCode();
+			names[i] = category.getCategoryName();
+			creationDates[i] = category.getCreationDate();
+			hashes[i++] = category.getContentHash();
+		}
+		return upsert(UPSERT_CATEGORIES, size, new String[] { "integer", "varchar", "date", "bigint" },
+				new Object[][] { codes, names, creationDates, hashes });
+	}
+
+	/*
+	 * Inserts new products & updates the name & category of existing ones whose
+	 * content hash changed.
+	 */
+	public UpsertCount upsertProducts(Collection<Product> productList) {
+		int size = productList.size();
+		Object[] codes = new Object[size];
+		Object[] names = new Object[size];
+		Object[] categoryCodes = new Object[size];
+		Object[] creationDates = new Object[size];
+		Object[] hashes = new Object[size];
+		int i = 0;
+		for (Product product : productList) {
+			codes[i] = product.getProductCode();
+			names[i] = product.getName();
+			categoryCodes[i] = product.getCategoryCode();
+			creationDates[i] = product.getCreationDate();
+			hashes[i++] = product.getContentHash();
+		}
+		return upsert(UPSERT_PRODUCTS, size, new String[] { "bigint", "varchar", "integer", "date", "bigint" },
+				new Object[][] { codes, names, categoryCodes, creationDates, hashes });
+	}
+
+	private UpsertCount upsert(String sql, int rows, String[] types, Object[][] columns) {
+		UpsertCount count = new UpsertCount(rows);
+		if (rows == 0)
+			return count;
+		jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			for (int column = 0; column < columns.length; column++)
+				statement.setArray(column + 1, connection.createArrayOf(types[column], columns[column]));
+			return statement;
+		}, (RowCallbackHandler) resultSet -> {
+			if (resultSet.getBoolean(1))
+				count.inserted++;
+			else
+				count.updated++;
+		});
+		return count;
+	}
+
+	private long copy(String sql, CharSequence rows) {
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try {
+			return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(rows.toString()));
+		} catch (SQLException | IOException e) {
+			throw new IllegalStateException("COPY failed: " + sql, e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	/**
+	 * Rows inserted, updated & left unchanged by one upsert
+	 */
+	public static class UpsertCount {
+		private final int rows;
+		private int inserted;
+		private int updated;
+
+		private UpsertCount(int rows) {
+			this.rows = rows;
+		}
+
+		public int getInserted() {
+			return inserted;
+		}
+
+		public int getUpdated() {
+			return updated;
+		}
+
+		public int getUnchanged() {
+			return rows - inserted - updated;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.example.productApp.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Names of the lookup caches of ProductService & their invalidation. The catalog
+ * only changes during imports, so cached pages stay valid until an import
+ * commits rows. Size & TTL are set by spring.cache.caffeine.spec.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Component
+public class CatalogCache {
+
+	public static final String PRODUCTS = "products";
+	public static final String CATEGORIES = "categories";
+	public static final String PRODUCTS_BY_CATEGORY = "productsByCategory";
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	/*
+	 * Clears the caches once the current transaction commits. Nothing is cleared
+	 * if it rolls back.
+	 */
+	public void evictAfterCommit(String... cacheNames) {
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				evict(cacheNames);
+			}
+		});
+	}
+
+	public void evict(String... cacheNames) {
+		for (String cacheName : cacheNames) {
+			Cache cache = cacheManager.getCache(cacheName);
+			if (cache != null)
+				cache.clear();
+		}
+	}
+}
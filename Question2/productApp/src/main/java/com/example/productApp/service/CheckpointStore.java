@@ -0,0 +1,84 @@
+package com.example.productApp.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.productApp.dto.ImportJob;
+
+/**
+ * Keeps the import_checkpoint table - for every import file the phase & the
+ * last CSV record whose chunk has committed. Checkpoints are saved in the
+ * transaction of the chunk they describe, so they never run ahead of the data.
+ * ImportJobService runs one import per file at a time, so every checkpoint has
+ * a single writer.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Component
+public class CheckpointStore {
+
+	private static final String FIND = "SELECT phase, record_number, character_position FROM import_checkpoint WHERE file_name = ?";
+	private static final String SAVE = "INSERT INTO import_checkpoint (file_name, phase, record_number, character_position, updated_at) "
+			+ "VALUES (?, ?, ?, ?, now()) ON CONFLICT (file_name) DO UPDATE SET phase = EXCLUDED.phase, "
+			+ "record_number = EXCLUDED.record_number, character_position = EXCLUDED.character_position, "
+			+ "updated_at = EXCLUDED.updated_at";
+	private static final String DELETE = "DELETE FROM import_checkpoint WHERE file_name = ?";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * @param fileName
+	 * @return Checkpoint of the file, null if there is none
+	 */
+	public Checkpoint find(String fileName) {
+		List<Checkpoint> checkpoints = jdbcTemplate.query(FIND,
+				(resultSet, row) -> new Checkpoint(ImportJob.Phase.valueOf(resultSet.getString(1)),
+						resultSet.getLong(2), resultSet.getLong(3)),
+				fileName);
+		return checkpoints.isEmpty() ? null : checkpoints.get(0);
+	}
+
+	/*
+	 * Records that all records up to recordNumber of the phase have committed.
+	 * characterPosition is where that record starts in the file.
+	 */
+	public void save(String fileName, ImportJob.Phase phase, long recordNumber, long characterPosition) {
+		jdbcTemplate.update(SAVE, fileName, phase.name(), recordNumber, characterPosition);
+	}
+
+	public void delete(String fileName) {
+		jdbcTemplate.update(DELETE, fileName);
+	}
+
+	/**
+	 * Last committed CSV record of an import phase
+	 */
+	public static class Checkpoint {
+		private final ImportJob.Phase phase;
+		private final long recordNumber;
+		private final long characterPosition;
+
+		public Checkpoint(ImportJob.Phase phase, long recordNumber, long characterPosition) {
+			this.phase = phase;
+			this.recordNumber = recordNumber;
+			this.characterPosition = characterPosition;
+		}
+
+		public ImportJob.Phase getPhase() {
+			return phase;
+		}
+
+		public long getRecordNumber() {
+			return recordNumber;
+		}
+
+		public long getCharacterPosition() {
+			return characterPosition;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.example.productApp.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs an import as three stages connected by bounded queues - parse on the
+ * calling thread, validate & write on a stage thread each. Parsing the next
+ * chunks therefore overlaps with validating & writing the previous ones, while
+ * at most queueCapacity chunks wait in front of each stage. Chunks pass every
+ * stage in the order they were parsed.
+ * 
+ * Stages handle failures of their own chunks. An exception escaping a stage is
+ * logged & only drops that chunk.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Component
+public class ChunkPipeline {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkPipeline.class);
+	// Marks the end of the chunks in a queue
+	private static final Object END = new Object();
+
+	@Value("${product.import.pipeline-queue-capacity:2}")
+	private int queueCapacity;
+
+	// Concurrency is bounded by the number of imports allowed to run at once
+	private final ExecutorService stageExecutor;
+
+	public ChunkPipeline() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		stageExecutor = Executors
+				.newCachedThreadPool(runnable -> new Thread(runnable, "csv-stage-" + threadNumber.incrementAndGet()));
+	}
+
+	@PreDestroy
+	void stopExecutor() {
+		stageExecutor.shutdownNow();
+	}
+
+	/**
+	 * Runs the pipeline until parser returns & every parsed chunk is written.
+	 * 
+	 * @param parser    passes every chunk to the given sink, returns false if
+	 *                  parsing failed
+	 * @param validator removes invalid entries from a chunk
+	 * @param writer    writes a validated chunk
+	 * @return result of parser
+	 */
+	public <C> boolean run(Predicate<Consumer<C>> parser, Consumer<C> validator, Consumer<C> writer) {
+		BlockingQueue<Object> validateQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+		BlockingQueue<Object> writeQueue = new ArrayBlockingQueue<Object>(queueCapacity);
+		Future<?> validating = stageExecutor.submit(() -> this.<C>drain(validateQueue, chunk -> {
+			validator.accept(chunk);
+			put(writeQueue, chunk);
+		}, () -> put(writeQueue, END)));
+		Future<?> writing = stageExecutor.submit(() -> drain(writeQueue, writer, () -> {
+		}));
+		boolean completed = false;
+		try {
+			boolean parsed = parser.test(chunk -> put(validateQueue, chunk));
+			put(validateQueue, END);
+			validating.get();
+			writing.get();
+			completed = true;
+			return parsed;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Import interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Import stage failed", e.getCause());
+		} finally {
+			if (!completed) {
+				validating.cancel(true);
+				writing.cancel(true);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <C> void drain(BlockingQueue<Object> queue, Consumer<C> stage, Runnable onEnd) {
+		try {
+			while (true) {
+				Object chunk = queue.take();
+				if (chunk == END)
+					break;
+				try {
+					stage.accept((C) chunk);
+				} catch (RuntimeException e) {
+					logger.error("Import stage dropped a chunk", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		onEnd.run();
+	}
+
+	private static void put(BlockingQueue<Object> queue, Object chunk) {
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Import interrupted", e);
+		}
+	}
+}
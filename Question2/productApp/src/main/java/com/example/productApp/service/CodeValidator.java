@@ -0,0 +1,82 @@
+package com.example.productApp.service;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.example.productApp.util.LongHashSet;
+
+/**
+ * Finds which of a set of codes already exist in the product or category table.
+ * Candidate codes are sent as one array parameter per batch & resolved with a
+ * join against unnest(array), so the statement stays the same size no matter how
+ * many codes are checked & uses the unique index on code. Batches hold at most
+ * batchSize codes. Matches are streamed into a LongHashSet without building a
+ * List of boxed codes.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Component
+public class CodeValidator {
+
+	private static final String EXISTING_PRODUCT_CODES = "SELECT p.code FROM product p JOIN unnest(?::bigint[]) AS c(code) ON p.code = c.code";
+	private static final String EXISTING_CATEGORY_CODES = "SELECT c.code FROM category c JOIN unnest(?::integer[]) AS k(code) ON c.code = k.code";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	// Number of codes sent in one query
+	@Value("${product.import.validation-batch-size:10000}")
+	private int batchSize;
+
+	/**
+	 * @param productCodes
+	 * @return product codes that exist in the Database
+	 */
+	public LongHashSet findExistingProductCodes(Collection<Long> productCodes) {
+		return findExisting(EXISTING_PRODUCT_CODES, "bigint", productCodes);
+	}
+
+	/**
+	 * @param categoryCodes
+	 * @return category codes that exist in the Database
+	 */
+	public LongHashSet findExistingCategoryCodes(Collection<Integer> categoryCodes) {
+		return findExisting(EXISTING_CATEGORY_CODES, "integer", categoryCodes);
+	}
+
+	private LongHashSet findExisting(String sql, String arrayType, Collection<? extends Number> codes) {
+		LongHashSet existing = new LongHashSet();
+		if (codes.isEmpty())
+			return existing;
+		Object[] batch = new Object[Math.min(batchSize, codes.size())];
+		int size = 0;
+		for (Number code : codes) {
+			batch[size++] = code;
+			if (size == batch.length) {
+				query(sql, arrayType, batch, existing);
+				size = 0;
+			}
+		}
+		if (size > 0) {
+			Object[] last = new Object[size];
+			System.arraycopy(batch, 0, last, 0, size);
+			query(sql, arrayType, last, existing);
+		}
+		return existing;
+	}
+
+	private void query(String sql, String arrayType, Object[] codes, LongHashSet existing) {
+		jdbcTemplate.query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			statement.setArray(1, connection.createArrayOf(arrayType, codes));
+			return statement;
+		}, (RowCallbackHandler) resultSet -> existing.add(resultSet.getLong(1)));
+	}
+}
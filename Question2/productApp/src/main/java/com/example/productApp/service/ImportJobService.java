@@ -0,0 +1,141 @@
+package com.example.productApp.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.productApp.dto.ImportJob;
+import com.example.productApp.dto.Result;
+import com.example.productApp.dto.WriteMode;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs CSV imports as background jobs on a dedicated executor, so that HTTP
+ * requests return immediately. At most maxConcurrent imports run at once & at
+ * most queueCapacity wait, further submissions are rejected. The last
+ * jobRetention jobs are kept for status polling.
+ * 
+ * A file is imported by one job at a time. A second import of the same file is
+ * rejected while the first is queued or running, so jobs never delete or
+ * overwrite each other's checkpoint.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+@Service
+public class ImportJobService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+	@Autowired
+	private ProductService productService;
+
+	@Value("${product.import.max-concurrent:2}")
+	private int maxConcurrent;
+
+	@Value("${product.import.queue-capacity:4}")
+	private int queueCapacity;
+
+	@Value("${product.import.job-retention:100}")
+	private int jobRetention;
+
+	private ThreadPoolExecutor executor;
+	private final Map<String, ImportJob> jobs = new ConcurrentHashMap<String, ImportJob>();
+	private final Queue<String> jobOrder = new ConcurrentLinkedQueue<String>();
+	// Queued or running job of every import file
+	private final Map<String, ImportJob> activeImports = new ConcurrentHashMap<String, ImportJob>();
+
+	@PostConstruct
+	void startExecutor() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity),
+				runnable -> new Thread(runnable, "csv-import-" + threadNumber.incrementAndGet()));
+	}
+
+	@PreDestroy
+	void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Queues a CSV import.
+	 * 
+	 * @param writeMode
+	 * @param resume    continue from the checkpoint of an interrupted import
+	 * @return ImportJob to poll for progress
+	 * @throws RejectedExecutionException if too many imports are running or queued
+	 * @throws IllegalStateException      if the file is already being imported
+	 */
+	public ImportJob submit(WriteMode writeMode, boolean resume) {
+		String importFile = productService.getImportFile();
+		ImportJob job = new ImportJob(UUID.randomUUID().toString(), writeMode, resume);
+		ImportJob active = activeImports.putIfAbsent(importFile, job);
+		if (active != null)
+			throw new IllegalStateException(
+					"Import of " + importFile + " is already queued or running as job " + active.getId());
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(() -> run(job, importFile));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			activeImports.remove(importFile, job);
+			throw e;
+		}
+		jobOrder.add(job.getId());
+		evictFinishedJobs();
+		return job;
+	}
+
+	/**
+	 * @param jobId
+	 * @return ImportJob, null if unknown or evicted
+	 */
+	public ImportJob getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	private void run(ImportJob job, String importFile) {
+		Result result;
+		try {
+			result = productService.loadCsvData(job);
+		} catch (RuntimeException e) {
+			logger.error("CSV import " + job.getId() + " failed", e);
+			result = new Result();
+			result.addErrors(e.getMessage());
+		}
+		// Released before the job reports its end, so a client that sees it finished
+		// can start the next import of the file right away
+		activeImports.remove(importFile, job);
+		job.setResult(result);
+		job.setPhase(result.getErrors().isEmpty() ? ImportJob.Phase.COMPLETED : ImportJob.Phase.FAILED);
+	}
+
+	// Forgets the oldest finished jobs beyond jobRetention
+	private void evictFinishedJobs() {
+		for (String jobId : jobOrder) {
+			if (jobs.size() <= jobRetention)
+				return;
+			ImportJob job = jobs.get(jobId);
+			if (job == null || job.isFinished()) {
+				jobs.remove(jobId);
+				jobOrder.remove(jobId);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.productApp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.example.productApp.util.LongHashSet;
+
+/**
+ * Codes of one import phase that chunks put in flight during validation & that
+ * are not released yet, because the write of their chunk has not committed. A
+ * chunk releases its codes only once its transaction has committed or rolled
+ * back, so every code of an earlier chunk is either still in flight or visible
+ * in the Database to the chunks validated after it.
+ * 
+ * Safe for one validating & one writing thread.
+ * 
+ * @author udhoji.shreya
+ *
+ */
+class InFlightCodes<K extends Number> {
+
+	private final Set<K> codes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Returns the candidates that already exist. Codes in flight are checked
+	 * before lookup is asked for the others. In the other order a chunk that
+	 * commits & releases its codes in between would be missed by both checks.
+	 * 
+	 * @param candidates
+	 * @param lookup     codes among the given ones that exist in the Database, null
+	 *                   to only check the codes in flight
+	 * @return existing codes
+	 */
+	LongHashSet findExisting(Collection<K> candidates, Function<Collection<K>, LongHashSet> lookup) {
+		List<K> inFlight = new ArrayList<K>();
+		Set<K> rest = new HashSet<K>();
+		for (K code : candidates) {
+			if (codes.contains(code))
+				inFlight.add(code);
+			else
+				rest.add(code);
+		}
+		LongHashSet existing = lookup == null || rest.isEmpty() ? new LongHashSet() : lookup.apply(rest);
+		for (K code : inFlight)
+			existing.add(code.longValue());
+		return existing;
+	}
+
+	/*
+	 * Puts the candidates in flight & adds those that were not in flight yet to
+	 * claimed, so that a chunk only ever releases codes it claimed itself.
+	 */
+	void claim(Collection<K> candidates, Collection<K> claimed) {
+		for (K code : candidates)
+			if (codes.add(code))
+				claimed.add(code);
+	}
+
+	// Takes the claimed codes out of flight & clears claimed
+	void release(Collection<K> claimed) {
+		codes.removeAll(claimed);
+		claimed.clear();
+	}
+
+	boolean contains(K code) {
+		return codes.contains(code);
+	}
+}
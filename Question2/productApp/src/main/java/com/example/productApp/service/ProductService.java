@@ -1,31 +1,48 @@
 package com.example.productApp.service;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.productApp.entity.Category;
 import com.example.productApp.entity.Product;
 import com.example.productApp.dto.CategoryDto;
+import com.example.productApp.dto.CursorPage;
+import com.example.productApp.dto.ImportJob;
 import com.example.productApp.dto.ProductDto;
 import com.example.productApp.dto.Result;
+import com.example.productApp.dto.WriteMode;
 import com.example.productApp.repository.CategoryRepository;
+import com.example.productApp.repository.KeysetRepository;
 import com.example.productApp.repository.ProductRepository;
+import com.example.productApp.util.ContentHash;
+import com.example.productApp.util.KeysetCursor;
+import com.example.productApp.util.LongHashSet;
 
-import jakarta.transaction.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 /**
  * Service class - Business logic to read & process CSV file, create product &
@@ -36,73 +53,399 @@ import jakarta.transaction.Transactional;
  *
  */
 @Service
-@Transactional
 public class ProductService {
 
+	// Supported keyset sort fields & how to read them from an entity
+	private static final Map<String, Function<Product, Object>> PRODUCT_SORT_KEYS = Map.of("id", Product::getId,
+			"name", Product::getName, "productCode", Product::getProductCode, "categoryCode",
+			Product::getCategoryCode, "creationDate", Product::getCreationDate);
+	private static final Map<String, Function<Category, Object>> CATEGORY_SORT_KEYS = Map.of("id", Category::getId,
+			"categoryName", Category::getCategoryName, "categoryCode", Category::getCategoryCode, "creationDate",
+			Category::getCreationDate);
+	// Reasons skipped records are counted under in the Result
+	private static final String BLANK_CATEGORY = "Category details blank";
+	private static final String DUPLICATE_CATEGORY = "Category code duplicate";
+	private static final String EXISTING_CATEGORY = "Category code already exists in Database";
+	private static final String BLANK_PRODUCT = "Product details blank";
+	private static final String DUPLICATE_PRODUCT = "Product code duplicate";
+	private static final String EXISTING_PRODUCT = "Product code already exists in Database";
+	private static final String INVALID_PRODUCT_CATEGORY = "Category code invalid for product";
+	private static final String NOT_A_NUMBER = "Code is not a number";
+	private static final String MALFORMED_RECORD = "Record malformed";
+	// Largest page of the listings, larger sizes are clamped
+	public static final int MAX_PAGE_SIZE = 1000;
+	// Converts sort values encoded in a cursor back to their type
+	private static final Map<String, Function<String, Object>> SORT_VALUE_PARSERS = Map.of("id", Integer::valueOf,
+			"name", value -> value, "categoryName", value -> value, "productCode", Long::valueOf, "categoryCode",
+			Integer::valueOf, "creationDate", Date::valueOf);
+
 	@Autowired
 	private ProductRepository productRepository;
 
 	@Autowired
 	private CategoryRepository categoryRepository;
 
+	@Autowired
+	private BulkWriter bulkWriter;
+
+	@Autowired
+	private ChunkPipeline chunkPipeline;
+
+	@Autowired
+	private CodeValidator codeValidator;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private CheckpointStore checkpointStore;
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	@Autowired
+	private KeysetRepository keysetRepository;
+
+	// Number of CSV records validated & inserted together
+	@Value("${product.import.chunk-size:1000}")
+	private int chunkSize;
+
+	// CSV file in the resources to import
+	@Value("${product.import.file:csv/TestExampleFile.csv}")
+	private String importFile;
+
+	/**
+	 * @return CSV file in the resources that loadCsvData imports
+	 */
+	public String getImportFile() {
+		return importFile;
+	}
+
 	/**
 	 * This method is invoked by the controller. It reads CSV data from .csv file
 	 * present in the resources. It creates product & category objects for the data
 	 * present in CSV. It performs validations on product & category objects before
 	 * insertion. It inserts data into the database.
 	 * 
+	 * The file is streamed twice in chunks of chunkSize records - first for the
+	 * categories, then for the products, so that products can reference categories
+	 * created from the same file. Chunks are parsed, validated & written by the
+	 * stages of a ChunkPipeline, so memory use does not depend on the file size.
+	 * Every chunk is written in its own transaction. A chunk that fails is rolled
+	 * back & reported in the errors without affecting the other chunks.
+	 * Duplicates across chunks are skipped as already existing in the Database.
+	 * 
+	 * Every chunk saves a checkpoint of its last record in its transaction. An
+	 * import run with resume continues after the checkpoint of an interrupted
+	 * import & skips the category phase if it had finished. The checkpoint is
+	 * removed once the whole file has been read. Rows of failed chunks before the
+	 * checkpoint are not retried.
+	 * 
 	 * @returns Result
 	 */
 	public Result loadCsvData() {
-		Result result = new Result();
-
-		// CSV Parsing
-		List<CSVRecord> csvRecords = getCsvRecords(result);
+		return loadCsvData(WriteMode.JPA);
+	}
 
-		if (Objects.nonNull(csvRecords)) {
-			Set<Product> productList = new HashSet<Product>();
-			Set<Category> categoryList = new HashSet<Category>();
-			Set<Integer> categoryCodes = new HashSet<Integer>();
-			Set<Integer> productCategoryCodes = new HashSet<Integer>();
-			Set<Long> productCodes = new HashSet<Long>();
+	/**
+	 * Same as loadCsvData(), writing new rows with the given write mode. The
+	 * Result reports the duration & the rows written per second.
+	 * 
+	 * @param writeMode
+	 * @returns Result
+	 */
+	public Result loadCsvData(WriteMode writeMode) {
+		return loadCsvData(new ImportJob(null, writeMode));
+	}
 
-			// Object Creation for Products & Categories
-			csvRecords.forEach(record -> {
-				createCategory(record.get("CATEGORY_CODE"), record.get("CATEGORY_NAME"), categoryList, result,
-						categoryCodes);
-			});
-			csvRecords.forEach(record -> {
-				createProduct(record.get("PRODUCT_CODE"), record.get("PRODUCT_NAME"),
-						record.get("PRODUCT_CATEGORY_CODE"), productList, result, productCodes, productCategoryCodes);
-			});
+	/**
+	 * Same as loadCsvData(WriteMode), reporting the phase & the records processed
+	 * to the job while the import runs.
+	 * 
+	 * @param job
+	 * @returns Result
+	 */
+	public Result loadCsvData(ImportJob job) {
+		Result result = new Result();
+		WriteMode writeMode = job.getWriteMode();
+		result.setWriteMode(writeMode);
+		long start = System.nanoTime();
 
-			// Validations for New Products & Categories
-			validateProducts(productList, productCodes, result);
-			validateCategory(productList, categoryList, categoryCodes, result, productCategoryCodes);
+		CheckpointStore.Checkpoint checkpoint = null;
+		if (job.isResume())
+			checkpoint = checkpointStore.find(importFile);
+		else
+			checkpointStore.delete(importFile);
+		if (checkpoint != null)
+			result.setResumedFrom(checkpoint.getPhase().name(), checkpoint.getRecordNumber());
+		boolean resumeProducts = checkpoint != null && checkpoint.getPhase() == ImportJob.Phase.PRODUCTS;
 
-			// Database Insertion for New Categories & Products
-			insertCategories(categoryList);
-			insertProducts(productList);
-		}
+		boolean parsed = resumeProducts || loadCategories(job, result, checkpoint);
+		if (parsed)
+			parsed = loadProducts(job, result, resumeProducts ? checkpoint : null);
+		if (parsed)
+			checkpointStore.delete(importFile);
+		result.setDuration(System.nanoTime() - start);
 		return result;
 	}
 
+	/*
+	 * Category phase - streams all categories through the pipeline, starting
+	 * after the checkpoint if there is one. Returns false if the file could not
+	 * be read.
+	 */
+	private boolean loadCategories(ImportJob job, Result result, CheckpointStore.Checkpoint checkpoint) {
+		WriteMode writeMode = job.getWriteMode();
+		job.setPhase(ImportJob.Phase.CATEGORIES);
+		InFlightCodes<Integer> categoryCodesInFlight = new InFlightCodes<Integer>();
+		LongHashSet seenCategoryCodes = new LongHashSet();
+		Consumer<ImportChunk<Category, Integer>> categoryWriter = categoryWriter(writeMode);
+		Runnable categoryRollback = () -> {
+			result.incrementSkippedCategories();
+			result.decrementCreatedCategories();
+		};
+		return chunkPipeline.<ImportChunk<Category, Integer>>run(
+				sink -> readCsvInChunks(result, checkpoint,
+						records -> sink.accept(parseCategoryChunk(records, result))),
+				chunk -> {
+					try {
+						validateCategory(chunk, categoryCodesInFlight, seenCategoryCodes, writeMode, result);
+					} catch (RuntimeException e) {
+						dropChunk(chunk, "validate", e, result, categoryRollback);
+						categoryCodesInFlight.release(chunk.claimed);
+						chunk.codes.clear();
+					}
+				}, chunk -> writeChunk(chunk, categoryCodesInFlight, categoryWriter, job, result, categoryRollback,
+						result::recordUpsertedCategories));
+	}
+
+	/*
+	 * Product phase - streams all products through the pipeline, starting after
+	 * the checkpoint if there is one. Returns false if the file could not be read.
+	 */
+	private boolean loadProducts(ImportJob job, Result result, CheckpointStore.Checkpoint checkpoint) {
+		WriteMode writeMode = job.getWriteMode();
+		job.setPhase(ImportJob.Phase.PRODUCTS);
+		InFlightCodes<Long> productCodesInFlight = new InFlightCodes<Long>();
+		LongHashSet seenProductCodes = new LongHashSet();
+		Consumer<ImportChunk<Product, Long>> productWriter = productWriter(writeMode);
+		Runnable productRollback = () -> {
+			result.incrementSkippedProducts();
+			result.decrementCreatedProducts();
+		};
+		return chunkPipeline.<ImportChunk<Product, Long>>run(
+				sink -> readCsvInChunks(result, checkpoint, records -> sink.accept(parseProductChunk(records, result))),
+				chunk -> {
+					try {
+						validateProducts(chunk, productCodesInFlight, seenProductCodes, writeMode, result);
+						validateProductCategory(chunk, result);
+					} catch (RuntimeException e) {
+						dropChunk(chunk, "validate", e, result, productRollback);
+						productCodesInFlight.release(chunk.claimed);
+						chunk.codes.clear();
+					}
+				}, chunk -> writeChunk(chunk, productCodesInFlight, productWriter, job, result, productRollback,
+						result::recordUpsertedProducts));
+	}
+
 	/*
 	 * This method uses Apache Commons for CSV Parsing logic. It skips processing
-	 * the first line because it is a header. It parses every line in the CSV and
-	 * returns CSVRecords that can be iterated over.
+	 * the first line because it is a header. It reads the records one by one &
+	 * passes them to chunkProcessor in chunks of chunkSize records. Returns false
+	 * if the file could not be read.
+	 * 
+	 * With a checkpoint the reader is moved straight to the last committed record,
+	 * which is skipped, so the records before it are neither decoded nor parsed.
 	 */
-	private List<CSVRecord> getCsvRecords(Result result) {
-		ClassPathResource resource = new ClassPathResource("csv/TestExampleFile.csv");
-		try (Reader input = new InputStreamReader(resource.getInputStream())) {
-			CSVParser parser = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(input);
-			return parser.getRecords();
-		} catch (Exception e) {
+	private boolean readCsvInChunks(Result result, CheckpointStore.Checkpoint checkpoint,
+			Consumer<List<CSVRecord>> chunkProcessor) {
+		ClassPathResource resource = new ClassPathResource(importFile);
+		try (Reader input = new InputStreamReader(resource.getInputStream());
+				CSVParser parser = openParser(resource, input, checkpoint)) {
+			List<CSVRecord> chunk = new ArrayList<CSVRecord>(chunkSize);
+			boolean skipCheckpointRecord = checkpoint != null;
+			for (CSVRecord record : parser) {
+				if (skipCheckpointRecord) {
+					skipCheckpointRecord = false;
+					continue;
+				}
+				chunk.add(record);
+				if (chunk.size() == chunkSize) {
+					chunkProcessor.accept(chunk);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty())
+				chunkProcessor.accept(chunk);
+			return true;
+		} catch (IOException | UncheckedIOException e) {
 			result.addErrors(e.getMessage());
-			return null;
+			return false;
 		}
 	}
 
+	/*
+	 * Opens a parser at the start of the file, or positioned at the record of the
+	 * checkpoint. The header names are read from the first line in that case.
+	 */
+	private CSVParser openParser(ClassPathResource resource, Reader input, CheckpointStore.Checkpoint checkpoint)
+			throws IOException {
+		if (checkpoint == null)
+			return CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(input);
+		String[] headerNames;
+		try (Reader headerInput = new InputStreamReader(resource.getInputStream());
+				CSVParser headerParser = CSVFormat.DEFAULT.builder().setHeader().build().parse(headerInput)) {
+			headerNames = headerParser.getHeaderNames().toArray(new String[0]);
+		}
+		long position = checkpoint.getCharacterPosition();
+		while (position > 0) {
+			long skipped = input.skip(position);
+			if (skipped <= 0)
+				throw new IOException("Checkpoint position " + checkpoint.getCharacterPosition() + " is beyond the end of "
+						+ importFile);
+			position -= skipped;
+		}
+		return new CSVParser(input, CSVFormat.DEFAULT.builder().setHeader(headerNames).build(),
+				checkpoint.getCharacterPosition(), checkpoint.getRecordNumber());
+	}
+
+	/*
+	 * Parse stage - creates the categories of one chunk of records. A record with
+	 * a code that is not a number or with missing columns is skipped on its own.
+	 */
+	private ImportChunk<Category, Integer> parseCategoryChunk(List<CSVRecord> records, Result result) {
+		ImportChunk<Category, Integer> chunk = new ImportChunk<Category, Integer>(ImportJob.Phase.CATEGORIES, records);
+		records.forEach(record -> {
+			try {
+				createCategory(record.get("CATEGORY_CODE"), record.get("CATEGORY_NAME"), chunk.entities, result,
+						chunk.codes);
+			} catch (IllegalArgumentException e) {
+				result.incrementSkippedCategories();
+				addMalformedRecord(record, e, result);
+			}
+		});
+		return chunk;
+	}
+
+	/*
+	 * Parse stage - creates the products of one chunk of records. Malformed
+	 * records are skipped as for categories.
+	 */
+	private ImportChunk<Product, Long> parseProductChunk(List<CSVRecord> records, Result result) {
+		ImportChunk<Product, Long> chunk = new ImportChunk<Product, Long>(ImportJob.Phase.PRODUCTS, records);
+		records.forEach(record -> {
+			try {
+				createProduct(record.get("PRODUCT_CODE"), record.get("PRODUCT_NAME"),
+						record.get("PRODUCT_CATEGORY_CODE"), chunk.entities, result, chunk.codes, chunk.categoryCodes);
+			} catch (IllegalArgumentException e) {
+				result.incrementSkippedProducts();
+				addMalformedRecord(record, e, result);
+			}
+		});
+		return chunk;
+	}
+
+	/*
+	 * Counts a record that could not be parsed as skipped. A code that is not a
+	 * number fails with a NumberFormatException, a record with fewer columns than
+	 * the header with an IllegalArgumentException.
+	 */
+	private static void addMalformedRecord(CSVRecord record, IllegalArgumentException e, Result result) {
+		if (e instanceof NumberFormatException)
+			result.addSkippedReasons(NOT_A_NUMBER,
+					"Record " + record.getRecordNumber() + " has a code that is not a number: " + e.getMessage());
+		else
+			result.addSkippedReasons(MALFORMED_RECORD,
+					"Record " + record.getRecordNumber() + " is malformed: " + e.getMessage());
+	}
+
+	/*
+	 * Returns the write stage action for categories in the given write mode.
+	 */
+	private Consumer<ImportChunk<Category, Integer>> categoryWriter(WriteMode writeMode) {
+		if (writeMode == WriteMode.COPY)
+			return chunk -> bulkWriter.copyCategories(chunk.entities);
+		if (writeMode == WriteMode.UPSERT)
+			return chunk -> chunk.upserted = bulkWriter.upsertCategories(chunk.entities);
+		return chunk -> insertCategories(chunk.entities);
+	}
+
+	/*
+	 * Returns the write stage action for products in the given write mode.
+	 */
+	private Consumer<ImportChunk<Product, Long>> productWriter(WriteMode writeMode) {
+		if (writeMode == WriteMode.COPY)
+			return chunk -> bulkWriter.copyProducts(chunk.entities);
+		if (writeMode == WriteMode.UPSERT)
+			return chunk -> chunk.upserted = bulkWriter.upsertProducts(chunk.entities);
+		return chunk -> insertProducts(chunk.entities);
+	}
+
+	/*
+	 * Write stage - inserts the entities of one chunk in a transaction of its own,
+	 * saves the checkpoint of the chunk & clears the persistence context before it
+	 * commits. If the transaction rolls back, the entities of the chunk are counted
+	 * as skipped. Once an upsert has
+	 * committed, its updated & unchanged rows are passed to upserted. The codes
+	 * claimed by the chunk are no longer in flight afterwards.
+	 */
+	private <E, K extends Number> void writeChunk(ImportChunk<E, K> chunk, InFlightCodes<K> codesInFlight,
+			Consumer<ImportChunk<E, K>> writer, ImportJob job, Result result, Runnable rollback,
+			BiConsumer<Integer, Integer> upserted) {
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				if (!chunk.entities.isEmpty()) {
+					writer.accept(chunk);
+					if (chunk.upserted == null || chunk.upserted.getInserted() + chunk.upserted.getUpdated() > 0)
+						evictAfterCommit(chunk.phase);
+				}
+				checkpointStore.save(importFile, chunk.phase, chunk.lastRecordNumber, chunk.lastCharacterPosition);
+				clearPersistenceContext();
+			});
+			if (chunk.upserted != null)
+				upserted.accept(chunk.upserted.getUpdated(), chunk.upserted.getUnchanged());
+		} catch (RuntimeException e) {
+			dropChunk(chunk, "write", e, result, rollback);
+		} finally {
+			codesInFlight.release(chunk.claimed);
+			job.addRecordsProcessed(chunk.records);
+		}
+	}
+
+	/*
+	 * Invalidates the lookups that rows written by the current transaction can
+	 * change, once it commits.
+	 */
+	private void evictAfterCommit(ImportJob.Phase phase) {
+		if (phase == ImportJob.Phase.CATEGORIES)
+			catalogCache.evictAfterCommit(CatalogCache.CATEGORIES);
+		else
+			catalogCache.evictAfterCommit(CatalogCache.PRODUCTS, CatalogCache.PRODUCTS_BY_CATEGORY);
+	}
+
+	/*
+	 * Counts the entities of a failed chunk as skipped & removes them from the
+	 * chunk.
+	 */
+	private <E, K> void dropChunk(ImportChunk<E, K> chunk, String stage, RuntimeException e, Result result,
+			Runnable rollback) {
+		result.addErrors("Failed to " + stage + " chunk of " + chunk.records + " records: " + e.getMessage());
+		chunk.entities.forEach(entity -> rollback.run());
+		chunk.entities.clear();
+	}
+
+	/*
+	 * Writes the pending inserts & detaches the inserted entities, so that the
+	 * persistence context does not grow with the file.
+	 */
+	private void clearPersistenceContext() {
+		entityManager.flush();
+		entityManager.clear();
+	}
+
 	/*
 	 * Inserts all products into Database table.
 	 */
@@ -120,52 +463,102 @@ public class ProductService {
 	}
 
 	/*
-	 * Validation 1 - Ensure that categories with only new category codes are
+	 * Validation - Ensure that categories with only new category codes are
 	 * processed. Categories with existing category codes will not be processed. Can
 	 * be enhanced to update existing category in database if required.
 	 * 
-	 * Validation 2 - Ensure that category code inserted in productList exists in
-	 * categoryList or Database table. Products with non-existent category codes
-	 * will not be processed.
+	 * Codes of earlier chunks that are still being written count as existing. They
+	 * are checked before the Database, because a chunk leaves codesInFlight only
+	 * after it committed. The codes of the remaining categories are put in flight.
+	 * In UPSERT mode existing categories are updated instead. Every code seen in
+	 * the file is kept in seenCodes, so a repeat in a later chunk is skipped as a
+	 * duplicate whether or not the first occurrence has committed yet.
 	 */
-	private void validateCategory(Set<Product> productList, Set<Category> categoryList, Set<Integer> categoryCodes,
-			Result result, Set<Integer> productCategoryCodes) {
-		productCategoryCodes.addAll(categoryCodes);
-		List<Integer> existingCodes = categoryRepository.findCodesIn(productCategoryCodes);
-		categoryList.forEach(item -> {
-			if (existingCodes.contains(item.getCategoryCode())) {
-				result.incrementSkippedCategories();
-				result.decrementCreatedCategories();
-				result.addSkippedReasons("Category code " + item.getCategoryCode() + " already exists in Database!");
-			}
+	private void validateCategory(ImportChunk<Category, Integer> chunk, InFlightCodes<Integer> codesInFlight,
+			LongHashSet seenCodes, WriteMode writeMode, Result result) {
+		if (chunk.codes.isEmpty())
+			return;
+		boolean upsert = writeMode == WriteMode.UPSERT;
+		LongHashSet existingCodes = upsert ? seenBefore(chunk.codes, seenCodes)
+				: codesInFlight.findExisting(chunk.codes, codeValidator::findExistingCategoryCodes);
+		chunk.entities.removeIf(item -> {
+			if (!existingCodes.contains(item.getCategoryCode()))
+				return false;
+			result.incrementSkippedCategories();
+			result.decrementCreatedCategories();
+			if (upsert)
+				result.addSkippedReasons(DUPLICATE_CATEGORY, "Category Code " + item.getCategoryCode() + " duplicate");
+			else
+				result.addSkippedReasons(EXISTING_CATEGORY,
+						"Category code " + item.getCategoryCode() + " already exists in Database!");
+			return true;
 		});
-		categoryList.removeIf(category -> existingCodes.contains(category.getCategoryCode()));
-		productList.forEach(prd -> {
-			if (!existingCodes.contains(prd.getCategoryCode()) && !categoryCodes.contains(prd.getCategoryCode())) {
-				result.incrementSkippedProducts();
-				result.decrementCreatedProducts();
-				result.addSkippedReasons(
-						"Category code " + prd.getCategoryCode() + " invalid for Product " + prd.getProductCode());
-			}
+		chunk.codes.removeIf(existingCodes::contains);
+		codesInFlight.claim(chunk.codes, chunk.claimed);
+	}
+
+	/*
+	 * Validation - Ensure that category code inserted in productList exists in
+	 * Database table. Categories of the file are inserted before the products, so
+	 * they are found as well. Products with non-existent category codes will not
+	 * be processed.
+	 */
+	private void validateProductCategory(ImportChunk<Product, Long> chunk, Result result) {
+		if (chunk.categoryCodes.isEmpty())
+			return;
+		LongHashSet existingCodes = codeValidator.findExistingCategoryCodes(chunk.categoryCodes);
+		chunk.entities.removeIf(prd -> {
+			if (existingCodes.contains(prd.getCategoryCode()))
+				return false;
+			result.incrementSkippedProducts();
+			result.decrementCreatedProducts();
+			result.addSkippedReasons(INVALID_PRODUCT_CATEGORY,
+					"Category code " + prd.getCategoryCode() + " invalid for Product " + prd.getProductCode());
+			return true;
 		});
-		productList.removeIf(prd -> !existingCodes.contains(prd.getCategoryCode()));
 	}
 
 	/*
 	 * Validation - Ensure that products with only new product codes are processed.
 	 * Products with existing product codes will not be processed. Can be enhanced
-	 * to update existing product in database if required.
+	 * to update existing product in database if required. Product codes still in
+	 * flight count as existing. In UPSERT mode existing products are updated &
+	 * repeats within the file are skipped as duplicates, as for categories.
 	 */
-	private void validateProducts(Set<Product> productList, Set<Long> productCodes, Result result) {
-		List<Long> existingCodes = productRepository.findCodesIn(productCodes);
-		productList.forEach(item -> {
-			if (existingCodes.contains(item.getProductCode())) {
-				result.incrementSkippedProducts();
-				result.decrementCreatedProducts();
-				result.addSkippedReasons("Product code " + item.getProductCode() + " already exists in Database!");
-			}
+	private void validateProducts(ImportChunk<Product, Long> chunk, InFlightCodes<Long> codesInFlight,
+			LongHashSet seenCodes, WriteMode writeMode, Result result) {
+		if (chunk.codes.isEmpty())
+			return;
+		boolean upsert = writeMode == WriteMode.UPSERT;
+		LongHashSet existingCodes = upsert ? seenBefore(chunk.codes, seenCodes)
+				: codesInFlight.findExisting(chunk.codes, codeValidator::findExistingProductCodes);
+		chunk.entities.removeIf(item -> {
+			if (!existingCodes.contains(item.getProductCode()))
+				return false;
+			result.incrementSkippedProducts();
+			result.decrementCreatedProducts();
+			if (upsert)
+				result.addSkippedReasons(DUPLICATE_PRODUCT, "Product Code " + item.getProductCode() + " duplicate");
+			else
+				result.addSkippedReasons(EXISTING_PRODUCT,
+						"Product code " + item.getProductCode() + " already exists in Database!");
+			return true;
 		});
-		productList.removeIf(product -> existingCodes.contains(product.getProductCode()));
+		chunk.codes.removeIf(existingCodes::contains);
+		codesInFlight.claim(chunk.codes, chunk.claimed);
+	}
+
+	/*
+	 * Returns the codes already seen in earlier chunks of the file & adds the
+	 * others to seenCodes. Codes are kept unboxed, so the set costs 8-16 bytes per
+	 * code of the file.
+	 */
+	private static <K extends Number> LongHashSet seenBefore(Set<K> codes, LongHashSet seenCodes) {
+		LongHashSet repeated = new LongHashSet();
+		for (K code : codes)
+			if (!seenCodes.add(code.longValue()))
+				repeated.add(code.longValue());
+		return repeated;
 	}
 
 	/*
@@ -178,21 +571,22 @@ public class ProductService {
 		if (categoryCode.isBlank() || categoryName.isBlank()) {
 			result.incrementSkippedCategories();
 			if (categoryCode.isBlank() && !categoryName.isBlank())
-				result.addSkippedReasons("Category Code is blank for Category Name " + categoryName);
+				result.addSkippedReasons(BLANK_CATEGORY, "Category Code is blank for Category Name " + categoryName);
 			else if (!categoryCode.isBlank() && categoryName.isBlank())
-				result.addSkippedReasons("Category Name is blank for Category Code " + categoryCode);
+				result.addSkippedReasons(BLANK_CATEGORY, "Category Name is blank for Category Code " + categoryCode);
 			else
-				result.addSkippedReasons("Category Name & Category Code is blank");
+				result.addSkippedReasons(BLANK_CATEGORY, "Category Name & Category Code is blank");
 		} else {
 			Integer categoryCd = Integer.parseInt(categoryCode);
 			if (categoryCodes.contains(categoryCd)) {
 				result.incrementSkippedCategories();
-				result.addSkippedReasons("Category Code " + categoryCode + " duplicate");
+				result.addSkippedReasons(DUPLICATE_CATEGORY, "Category Code " + categoryCode + " duplicate");
 			} else {
 				Category category = new Category();
 				category.setCategoryCode(categoryCd);
 				category.setCategoryName(categoryName);
 				category.setCreationDate(new Date(System.currentTimeMillis()));
+				category.setContentHash(ContentHash.of(categoryName));
 				categoryList.add(category);
 				categoryCodes.add(categoryCd);
 				result.incrementCreatedCategories();
@@ -210,24 +604,26 @@ public class ProductService {
 		if (productCode.isBlank() || productName.isBlank() || productCategoryCode.isBlank()) {
 			result.incrementSkippedProducts();
 			if (productCode.isBlank() && !productName.isBlank())
-				result.addSkippedReasons("Product Code is blank for Product Name " + productName);
+				result.addSkippedReasons(BLANK_PRODUCT, "Product Code is blank for Product Name " + productName);
 			else if (!productCode.isBlank() && productName.isBlank())
-				result.addSkippedReasons("Product Name is blank for Product Code " + productCode);
+				result.addSkippedReasons(BLANK_PRODUCT, "Product Name is blank for Product Code " + productCode);
 			else if (productCategoryCode.isBlank())
-				result.addSkippedReasons("Product Category Code is blank for Product Code " + productCode);
+				result.addSkippedReasons(BLANK_PRODUCT,
+						"Product Category Code is blank for Product Code " + productCode);
 			else
-				result.addSkippedReasons("Product Details blank");
+				result.addSkippedReasons(BLANK_PRODUCT, "Product Details blank");
 		} else {
 			Long productCd = Long.parseLong(productCode);
 			if (productCodes.contains(productCd)) {
 				result.incrementSkippedProducts();
-				result.addSkippedReasons("Product Code " + productCd + " duplicate");
+				result.addSkippedReasons(DUPLICATE_PRODUCT, "Product Code " + productCd + " duplicate");
 			} else {
 				Product product = new Product();
 				product.setProductCode(productCd);
 				product.setName(productName);
 				product.setCategoryCode(Integer.parseInt(productCategoryCode));
 				product.setCreationDate(new Date(System.currentTimeMillis()));
+				product.setContentHash(ContentHash.of(productName, product.getCategoryCode()));
 				productList.add(product);
 				productCodes.add(productCd);
 				categoryCodes.add(product.getCategoryCode());
@@ -237,44 +633,160 @@ public class ProductService {
 	}
 
 	/**
+	 * Lookups by product code are cached until an import writes products.
+	 * 
 	 * @param productCode
 	 * @param pageable
 	 * @return ProductDto
 	 */
+	@Cacheable(cacheNames = CatalogCache.PRODUCTS, condition = "#productCode != null")
 	public Page<ProductDto> getProducts(Long productCode, Pageable pageable) {
 		Page<Product> page;
 		if (productCode != null)
 			page = productRepository.findByProductCode(productCode, pageable);
 		else
 			page = productRepository.findAll(pageable);
-		return page.map(p -> new ProductDto(p.getId(), p.getName(), p.getProductCode(), p.getCategoryCode(),
-				p.getCreationDate()));
+		return page.map(ProductService::toProductDto);
 	}
 
 	/**
+	 * Lookups by category code are cached until an import writes categories.
+	 * 
 	 * @param categoryCode
 	 * @param pageable
 	 * @return CategoryDto
 	 */
+	@Cacheable(cacheNames = CatalogCache.CATEGORIES, condition = "#categoryCode != null")
 	public Page<CategoryDto> getCategories(Integer categoryCode, Pageable pageable) {
 		Page<Category> page;
 		if (categoryCode != null)
 			page = categoryRepository.findByCategoryCode(categoryCode, pageable);
 		else
 			page = categoryRepository.findAll(pageable);
-		return page.map(p -> new CategoryDto(p.getId(), p.getCategoryName(), p.getCategoryCode(), p.getCreationDate()));
+		return page.map(ProductService::toCategoryDto);
+	}
+
+	/**
+	 * Lists products with keyset pagination, optionally of one category. Sort
+	 * values are expected to be non-null, as written by the import.
+	 * 
+	 * @param categoryCode filter, null for all products
+	 * @param sortField    id, name, productCode, categoryCode or creationDate
+	 * @param descending
+	 * @param size         at most MAX_PAGE_SIZE, larger sizes are clamped
+	 * @param cursor       nextCursor of the previous page, null for the first page
+	 * @return CursorPage of ProductDto
+	 * @throws IllegalArgumentException for an unsupported sort, size or cursor
+	 */
+	public CursorPage<ProductDto> getProductsAfter(Integer categoryCode, String sortField, boolean descending,
+			int size, String cursor) {
+		Function<Product, Object> sortKey = PRODUCT_SORT_KEYS.get(sortField);
+		if (sortKey == null)
+			throw new IllegalArgumentException("Unsupported sort criteria " + sortField);
+		size = pageSize(size);
+		KeysetCursor after = decodeCursor(cursor, sortField, descending);
+		List<Product> products = keysetRepository.findPage(Product.class,
+				categoryCode == null ? null : "categoryCode", categoryCode, sortField, descending, after, size + 1);
+		String nextCursor = null;
+		if (products.size() > size) {
+			products = products.subList(0, size);
+			Product last = products.get(size - 1);
+			nextCursor = new KeysetCursor(sortField, descending, sortKey.apply(last), last.getId()).encode();
+		}
+		return new CursorPage<ProductDto>(products.stream().map(ProductService::toProductDto).toList(), nextCursor);
 	}
 
 	/**
+	 * Lists categories with keyset pagination. Sort values are expected to be
+	 * non-null, as written by the import.
+	 * 
+	 * @param sortField  id, categoryName, categoryCode or creationDate
+	 * @param descending
+	 * @param size       at most MAX_PAGE_SIZE, larger sizes are clamped
+	 * @param cursor     nextCursor of the previous page, null for the first page
+	 * @return CursorPage of CategoryDto
+	 * @throws IllegalArgumentException for an unsupported sort, size or cursor
+	 */
+	public CursorPage<CategoryDto> getCategoriesAfter(String sortField, boolean descending, int size,
+			String cursor) {
+		Function<Category, Object> sortKey = CATEGORY_SORT_KEYS.get(sortField);
+		if (sortKey == null)
+			throw new IllegalArgumentException("Unsupported sort criteria " + sortField);
+		size = pageSize(size);
+		KeysetCursor after = decodeCursor(cursor, sortField, descending);
+		List<Category> categories = keysetRepository.findPage(Category.class, null, null, sortField, descending,
+				after, size + 1);
+		String nextCursor = null;
+		if (categories.size() > size) {
+			categories = categories.subList(0, size);
+			Category last = categories.get(size - 1);
+			nextCursor = new KeysetCursor(sortField, descending, sortKey.apply(last), last.getId()).encode();
+		}
+		return new CursorPage<CategoryDto>(categories.stream().map(ProductService::toCategoryDto).toList(),
+				nextCursor);
+	}
+
+	// Checks the page size & clamps it, so that size + 1 cannot overflow
+	static int pageSize(int size) {
+		if (size <= 0)
+			throw new IllegalArgumentException("size must be positive : " + size);
+		return Math.min(size, MAX_PAGE_SIZE);
+	}
+
+	private static KeysetCursor decodeCursor(String cursor, String sortField, boolean descending) {
+		if (cursor == null || cursor.isBlank())
+			return null;
+		return KeysetCursor.decode(cursor, sortField, descending, SORT_VALUE_PARSERS.get(sortField));
+	}
+
+	private static ProductDto toProductDto(Product p) {
+		return new ProductDto(p.getId(), p.getName(), p.getProductCode(), p.getCategoryCode(), p.getCreationDate());
+	}
+
+	private static CategoryDto toCategoryDto(Category c) {
+		return new CategoryDto(c.getId(), c.getCategoryName(), c.getCategoryCode(), c.getCreationDate());
+	}
+
+	/**
+	 * Pages of a category are cached until an import writes products.
+	 * 
 	 * @param categoryCode
 	 * @param pageable
 	 * @return ProductDto
 	 */
+	@Cacheable(cacheNames = CatalogCache.PRODUCTS_BY_CATEGORY)
 	public Page<ProductDto> getProductsByCategory(Integer categoryCode, Pageable pageable) {
 		Page<Product> page;
 		page = productRepository.findByCategoryCode(categoryCode, pageable);
-		return page.map(p -> new ProductDto(p.getId(), p.getName(), p.getProductCode(), p.getCategoryCode(),
-				p.getCreationDate()));
+		return page.map(ProductService::toProductDto);
+	}
+
+	/*
+	 * Entities created from one chunk of CSV records on their way through the
+	 * pipeline, together with their codes, for products the referenced category
+	 * codes & the position of the chunk in the file.
+	 */
+	private static class ImportChunk<E, K> {
+		private final ImportJob.Phase phase;
+		private final int records;
+		// Last record of the chunk & where it starts, saved as checkpoint
+		private final long lastRecordNumber;
+		private final long lastCharacterPosition;
+		private final Set<E> entities = new HashSet<E>();
+		private final Set<K> codes = new HashSet<K>();
+		private final Set<Integer> categoryCodes = new HashSet<Integer>();
+		// Codes this chunk put in flight, released once it is written or dropped
+		private final Set<K> claimed = new HashSet<K>();
+		// Set by the write stage in UPSERT mode
+		private BulkWriter.UpsertCount upserted;
+
+		private ImportChunk(ImportJob.Phase phase, List<CSVRecord> records) {
+			this.phase = phase;
+			this.records = records.size();
+			CSVRecord last = records.get(records.size() - 1);
+			this.lastRecordNumber = last.getRecordNumber();
+			this.lastCharacterPosition = last.getCharacterPosition();
+		}
 	}
 
 }
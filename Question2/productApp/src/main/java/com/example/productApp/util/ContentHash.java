@@ -0,0 +1,49 @@
+package com.example.productApp.util;
+
+/**
+ * @author udhoji.shreya - 64-bit FNV-1a hash over the imported content of a
+ *         row. Rows whose hash matches the stored one are left untouched by
+ *         upserts.
+ *
+ */
+public final class ContentHash {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private ContentHash() {
+	}
+
+	/**
+	 * @param categoryName
+	 * @return hash of a category row
+	 */
+	public static long of(String categoryName) {
+		return hash(OFFSET_BASIS, categoryName);
+	}
+
+	/**
+	 * @param productName
+	 * @param categoryCode
+	 * @return hash of a product row
+	 */
+	public static long of(String productName, int categoryCode) {
+		long h = hash(OFFSET_BASIS, productName);
+		for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+			h ^= (categoryCode >>> shift) & 0xff;
+			h *= PRIME;
+		}
+		return h;
+	}
+
+	private static long hash(long h, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			h ^= c & 0xff;
+			h *= PRIME;
+			h ^= c >>> 8;
+			h *= PRIME;
+		}
+		return h;
+	}
+}
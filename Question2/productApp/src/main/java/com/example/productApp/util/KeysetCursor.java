@@ -0,0 +1,72 @@
+package com.example.productApp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * @author udhoji.shreya - Position in a keyset listing - the sort value & id of
+ *         the last entry returned. Clients get it as an opaque URL-safe Base64
+ *         token, which also carries the sort it was created for, so that a
+ *         cursor cannot be replayed against a different sort.
+ *
+ */
+public class KeysetCursor {
+
+	private static final char SEPARATOR = '|';
+
+	private final String sortField;
+	private final boolean descending;
+	private final Object value;
+	private final int id;
+
+	public KeysetCursor(String sortField, boolean descending, Object value, int id) {
+		this.sortField = sortField;
+		this.descending = descending;
+		this.value = value;
+		this.id = id;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String encode() {
+		String plain = sortField + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + id + SEPARATOR + value;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param token       cursor returned by an earlier page
+	 * @param sortField   sort of the current request
+	 * @param descending  sort order of the current request
+	 * @param valueParser converts the encoded sort value back to its type
+	 * @return KeysetCursor
+	 * @throws IllegalArgumentException if the token is malformed or was created
+	 *                                  for another sort
+	 */
+	public static KeysetCursor decode(String token, String sortField, boolean descending,
+			Function<String, Object> valueParser) {
+		String plain;
+		try {
+			plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Malformed cursor", e);
+		}
+		// The value is last, so it may contain the separator
+		String[] parts = plain.split("\\" + SEPARATOR, 4);
+		if (parts.length != 4)
+			throw new IllegalArgumentException("Malformed cursor");
+		if (!parts[0].equals(sortField) || !parts[1].equals(descending ? "desc" : "asc"))
+			throw new IllegalArgumentException("Cursor was created for sort " + parts[0] + "," + parts[1]);
+		try {
+			return new KeysetCursor(sortField, descending, valueParser.apply(parts[3]), Integer.parseInt(parts[2]));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed cursor", e);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.productApp.util;
+
+import java.util.Arrays;
+
+/**
+ * @author udhoji.shreya - Set of primitive long values with open addressing &
+ *         linear probing. Adding & looking up a code never boxes it, so large
+ *         code sets cost 8-16 bytes per code instead of a Long & a map entry.
+ *         Not thread-safe.
+ *
+ */
+public class LongHashSet {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	// Marks a free slot. The value itself is tracked by containsFree.
+	private static final long FREE = Long.MIN_VALUE;
+
+	private long[] slots;
+	private int size;
+	private boolean containsFree;
+
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		// Keep the load factor at or below 0.5
+		while (capacity < expectedSize * 2L)
+			capacity <<= 1;
+		slots = new long[capacity];
+		Arrays.fill(slots, FREE);
+	}
+
+	// Adds the value to the set. Returns false if it was already present.
+	public boolean add(long value) {
+		if (value == FREE) {
+			if (containsFree)
+				return false;
+			containsFree = true;
+			size++;
+			return true;
+		}
+		int mask = slots.length - 1;
+		int slot = slotOf(value, mask);
+		while (slots[slot] != FREE) {
+			if (slots[slot] == value)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = value;
+		if (++size * 2 > slots.length)
+			grow();
+		return true;
+	}
+
+	// Checks if the value is in the set
+	public boolean contains(long value) {
+		if (value == FREE)
+			return containsFree;
+		int mask = slots.length - 1;
+		int slot = slotOf(value, mask);
+		while (slots[slot] != FREE) {
+			if (slots[slot] == value)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void grow() {
+		long[] old = slots;
+		slots = new long[old.length << 1];
+		Arrays.fill(slots, FREE);
+		int mask = slots.length - 1;
+		for (long value : old) {
+			if (value != FREE) {
+				int slot = slotOf(value, mask);
+				while (slots[slot] != FREE)
+					slot = (slot + 1) & mask;
+				slots[slot] = value;
+			}
+		}
+	}
+
+	private static int slotOf(long value, int mask) {
+		// Murmur3 finalizer spreads sequential codes across the table
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h & mask;
+	}
+}
@@ -23,3 +23,27 @@ CREATE TABLE IF NOT EXISTS product (
         REFERENCES category (code)
 );
 
+-- Hash of the imported content, used by upserts to skip unchanged rows
+ALTER TABLE category ADD COLUMN IF NOT EXISTS content_hash BIGINT;
+ALTER TABLE product ADD COLUMN IF NOT EXISTS content_hash BIGINT;
+
+-- Last committed record of each import file, used to resume interrupted imports
+CREATE TABLE IF NOT EXISTS import_checkpoint (
+    file_name varchar(255) NOT NULL,
+    phase varchar(20) NOT NULL,
+    record_number BIGINT NOT NULL,
+    character_position BIGINT NOT NULL,
+    updated_at timestamp,
+    CONSTRAINT import_checkpoint_pkey PRIMARY KEY (file_name)
+);
+
+-- Indexes for keyset pagination, every sort field is paired with id as tie-breaker
+CREATE INDEX IF NOT EXISTS idx_product_name_id ON product (name, id);
+CREATE INDEX IF NOT EXISTS idx_product_category_code_id ON product (category_code, id);
+CREATE INDEX IF NOT EXISTS idx_product_creation_date_id ON product (creation_date, id);
+CREATE INDEX IF NOT EXISTS idx_category_name_id ON category (name, id);
+CREATE INDEX IF NOT EXISTS idx_category_creation_date_id ON category (creation_date, id);
+-- Products of one category, the filter leads so that the sort range stays within it
+CREATE INDEX IF NOT EXISTS idx_product_category_code_name_id ON product (category_code, name, id);
+CREATE INDEX IF NOT EXISTS idx_product_category_code_code_id ON product (category_code, code, id);
+CREATE INDEX IF NOT EXISTS idx_product_category_code_creation_date_id ON product (category_code, creation_date, id);
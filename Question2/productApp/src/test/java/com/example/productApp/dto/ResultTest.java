@@ -0,0 +1,32 @@
+package com.example.productApp.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ResultTest {
+
+	@Test
+	void skippedReasonsAreCountedInFullButSampled() {
+		Result result = new Result();
+		for (int i = 0; i < 1000; i++)
+			result.addSkippedReasons("duplicate", "Product Code " + i + " duplicate");
+		result.addSkippedReasons("blank", "Product Details blank");
+
+		assertEquals(Map.of("duplicate", 1000, "blank", 1), result.getSkippedReasonCounts());
+		assertEquals(Result.SKIPPED_SAMPLES_PER_REASON + 1, result.getSkippedReasons().size());
+		assertEquals("Product Details blank", result.getSkippedReasons().get(Result.SKIPPED_SAMPLES_PER_REASON));
+	}
+
+	@Test
+	void errorsAreCountedInFullButSampled() {
+		Result result = new Result();
+		for (int i = 0; i < Result.ERROR_SAMPLES * 3; i++)
+			result.addErrors("Failed to write chunk " + i);
+
+		assertEquals(Result.ERROR_SAMPLES * 3, result.getErrorCount());
+		assertEquals(Result.ERROR_SAMPLES, result.getErrors().size());
+	}
+}
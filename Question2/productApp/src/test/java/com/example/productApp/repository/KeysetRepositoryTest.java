@@ -0,0 +1,117 @@
+package com.example.productApp.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.example.productApp.entity.Category;
+import com.example.productApp.entity.Product;
+import com.example.productApp.util.KeysetCursor;
+
+/*
+ * Pages through products whose sort values repeat, so most pages start in the
+ * middle of a run of equal values & only the id tells the rows apart. Runs
+ * against the PostgreSQL of docker-compose.yml, as the row-value comparison is
+ * evaluated by the Database, & is skipped when it is not reachable. Every test
+ * rolls back.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(KeysetRepository.class)
+@EnabledIf("databaseAvailable")
+class KeysetRepositoryTest {
+
+	// Codes far above those of the import files
+	private static final int CATEGORY_CODE = 2_000_000_001;
+	private static final long FIRST_PRODUCT_CODE = 9_000_000_000_001L;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private KeysetRepository keysetRepository;
+
+	private final List<Product> products = new ArrayList<Product>();
+
+	static boolean databaseAvailable() {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("localhost", 5432), 500);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@BeforeEach
+	void insertProducts() {
+		Category category = new Category();
+		category.setCategoryCode(CATEGORY_CODE);
+		category.setCategoryName("Keyset");
+		entityManager.persist(category);
+		for (int i = 0; i < 23; i++) {
+			Product product = new Product();
+			product.setProductCode(FIRST_PRODUCT_CODE + i);
+			product.setName("Product " + (i % 3));
+			product.setCategoryCode(CATEGORY_CODE);
+			product.setCreationDate(Date.valueOf("2024-01-0" + (1 + i % 2)));
+			products.add(entityManager.persist(product));
+		}
+		entityManager.flush();
+	}
+
+	@Test
+	void pagesByRepeatedNameReturnEveryRowOnce() {
+		assertPagesCoverAllRows("name", Product::getName, false);
+		assertPagesCoverAllRows("name", Product::getName, true);
+	}
+
+	@Test
+	void pagesByRepeatedDateReturnEveryRowOnce() {
+		assertPagesCoverAllRows("creationDate", Product::getCreationDate, false);
+		assertPagesCoverAllRows("creationDate", Product::getCreationDate, true);
+	}
+
+	@Test
+	void pagesByIdReturnEveryRowOnce() {
+		assertPagesCoverAllRows("id", Product::getId, false);
+		assertPagesCoverAllRows("id", Product::getId, true);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void assertPagesCoverAllRows(String sortField, Function<Product, Object> sortKey, boolean descending) {
+		Comparator<Product> order = Comparator.comparing(product -> (Comparable) sortKey.apply(product));
+		order = order.thenComparing(Product::getId);
+		if (descending)
+			order = order.reversed();
+		List<Integer> expected = products.stream().sorted(order).map(Product::getId).toList();
+
+		List<Integer> walked = new ArrayList<Integer>();
+		KeysetCursor after = null;
+		while (true) {
+			List<Product> page = keysetRepository.findPage(Product.class, "categoryCode", CATEGORY_CODE, sortField,
+					descending, after, 4);
+			if (page.isEmpty())
+				break;
+			page.forEach(product -> walked.add(product.getId()));
+			Product last = page.get(page.size() - 1);
+			after = new KeysetCursor(sortField, descending, sortKey.apply(last), last.getId());
+		}
+		assertEquals(expected, walked, sortField + (descending ? " desc" : " asc"));
+	}
+}
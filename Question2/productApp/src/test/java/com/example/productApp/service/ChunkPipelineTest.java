@@ -0,0 +1,85 @@
+package com.example.productApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ChunkPipelineTest {
+
+	private ChunkPipeline pipeline;
+
+	@BeforeEach
+	void createPipeline() {
+		pipeline = new ChunkPipeline();
+		ReflectionTestUtils.setField(pipeline, "queueCapacity", 2);
+	}
+
+	@AfterEach
+	void stopPipeline() {
+		pipeline.stopExecutor();
+	}
+
+	@Test
+	void chunksPassEveryStageInParseOrder() {
+		List<Integer> validated = new CopyOnWriteArrayList<Integer>();
+		List<Integer> written = new CopyOnWriteArrayList<Integer>();
+		boolean parsed = pipeline.<Integer>run(sink -> {
+			for (int i = 0; i < 100; i++)
+				sink.accept(i);
+			return true;
+		}, validated::add, written::add);
+
+		List<Integer> expected = IntStream.range(0, 100).boxed().toList();
+		assertTrue(parsed);
+		assertEquals(expected, validated);
+		assertEquals(expected, written);
+	}
+
+	@Test
+	void failingChunkIsDroppedAndOthersContinue() {
+		List<Integer> written = new CopyOnWriteArrayList<Integer>();
+		boolean parsed = pipeline.<Integer>run(sink -> {
+			for (int i = 0; i < 10; i++)
+				sink.accept(i);
+			return false;
+		}, chunk -> {
+			if (chunk == 3)
+				throw new IllegalStateException("invalid chunk");
+		}, chunk -> {
+			if (chunk == 5)
+				throw new IllegalStateException("write failed");
+			written.add(chunk);
+		});
+
+		assertFalse(parsed);
+		assertEquals(List.of(0, 1, 2, 4, 6, 7, 8, 9), written);
+	}
+
+	@Test
+	void parserFailureStopsTheStages() {
+		List<Integer> written = new CopyOnWriteArrayList<Integer>();
+		assertThrows(IllegalStateException.class, () -> pipeline.<Integer>run(sink -> {
+			sink.accept(1);
+			throw new IllegalStateException("file unreadable");
+		}, chunk -> {
+		}, written::add));
+
+		// The pipeline stays usable for the next import
+		assertTrue(pipeline.<Integer>run(sink -> {
+			sink.accept(2);
+			return true;
+		}, chunk -> {
+		}, written::add));
+		assertTrue(written.contains(2));
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.productApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.productApp.dto.ImportJob;
+import com.example.productApp.dto.Result;
+import com.example.productApp.dto.WriteMode;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+
+	@Mock
+	private ProductService productService;
+
+	@InjectMocks
+	private ImportJobService importJobService;
+
+	@BeforeEach
+	void startExecutor() {
+		ReflectionTestUtils.setField(importJobService, "maxConcurrent", 2);
+		ReflectionTestUtils.setField(importJobService, "queueCapacity", 4);
+		ReflectionTestUtils.setField(importJobService, "jobRetention", 100);
+		importJobService.startExecutor();
+	}
+
+	@AfterEach
+	void stopExecutor() {
+		importJobService.stopExecutor();
+	}
+
+	@Test
+	void secondImportOfSameFileIsRejectedWhileFirstRuns() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		when(productService.getImportFile()).thenReturn("csv/products.csv");
+		when(productService.loadCsvData(any(ImportJob.class))).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return new Result();
+		});
+
+		ImportJob first = importJobService.submit(WriteMode.JPA, false);
+		assertThrows(IllegalStateException.class, () -> importJobService.submit(WriteMode.JPA, true));
+
+		release.countDown();
+		awaitFinished(first);
+		assertEquals(ImportJob.Phase.COMPLETED, first.getPhase());
+
+		ImportJob next = importJobService.submit(WriteMode.JPA, true);
+		assertTrue(next.isResume());
+		awaitFinished(next);
+	}
+
+	private static void awaitFinished(ImportJob job) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (!job.isFinished() && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.productApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.productApp.util.LongHashSet;
+
+class InFlightCodesTest {
+
+	@Test
+	void codeOfEarlierChunkCommittingDuringLookupIsFound() {
+		InFlightCodes<Long> inFlight = new InFlightCodes<Long>();
+		inFlight.claim(Set.of(7L), new ArrayList<Long>());
+		List<Long> looked = new ArrayList<Long>();
+
+		// The earlier chunk commits & leaves flight after the Database was read
+		LongHashSet existing = inFlight.findExisting(Set.of(7L, 8L), (Collection<Long> codes) -> {
+			looked.addAll(codes);
+			inFlight.release(new HashSet<Long>(Set.of(7L)));
+			return new LongHashSet();
+		});
+
+		assertTrue(existing.contains(7L));
+		assertFalse(existing.contains(8L));
+		assertEquals(List.of(8L), looked);
+	}
+
+	@Test
+	void lookupFindsCodesNotInFlight() {
+		InFlightCodes<Integer> inFlight = new InFlightCodes<Integer>();
+		inFlight.claim(Set.of(1), new ArrayList<Integer>());
+		LongHashSet existing = inFlight.findExisting(Set.of(1, 2, 3), codes -> {
+			LongHashSet found = new LongHashSet();
+			found.add(3);
+			return found;
+		});
+
+		assertTrue(existing.contains(1));
+		assertFalse(existing.contains(2));
+		assertTrue(existing.contains(3));
+	}
+
+	@Test
+	void withoutLookupOnlyCodesInFlightExist() {
+		InFlightCodes<Integer> inFlight = new InFlightCodes<Integer>();
+		inFlight.claim(Set.of(1), new ArrayList<Integer>());
+		LongHashSet existing = inFlight.findExisting(Set.of(1, 2), null);
+
+		assertEquals(1, existing.size());
+		assertTrue(existing.contains(1));
+	}
+
+	@Test
+	void chunkOnlyReleasesCodesItClaimed() {
+		InFlightCodes<Long> inFlight = new InFlightCodes<Long>();
+		Set<Long> first = new HashSet<Long>();
+		Set<Long> second = new HashSet<Long>();
+		inFlight.claim(Set.of(1L, 2L), first);
+		inFlight.claim(Set.of(2L, 3L), second);
+		assertEquals(Set.of(3L), second);
+
+		// Dropping the second chunk keeps the codes of the first in flight
+		inFlight.release(second);
+		assertTrue(inFlight.contains(1L));
+		assertTrue(inFlight.contains(2L));
+		assertFalse(inFlight.contains(3L));
+		assertTrue(second.isEmpty());
+	}
+}
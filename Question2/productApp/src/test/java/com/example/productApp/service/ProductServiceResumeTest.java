@@ -0,0 +1,206 @@
+package com.example.productApp.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.productApp.dto.ImportJob;
+import com.example.productApp.dto.Result;
+import com.example.productApp.dto.WriteMode;
+import com.example.productApp.entity.Category;
+import com.example.productApp.entity.Product;
+import com.example.productApp.repository.CategoryRepository;
+import com.example.productApp.repository.ProductRepository;
+import com.example.productApp.util.LongHashSet;
+
+import jakarta.persistence.EntityManager;
+
+/*
+ * Interrupts an import at a saved checkpoint & resumes it against a database
+ * holding exactly what had committed by then. The file has quoted commas, a
+ * record spanning two lines & non-ASCII names, so the character positions of
+ * records differ from their line numbers.
+ */
+class ProductServiceResumeTest {
+
+	private static final String FILE = "csv/ResumeTestFile.csv";
+	private static final List<Long> ALL_CODES = LongStream.rangeClosed(1, 14).boxed().toList();
+
+	private ChunkPipeline chunkPipeline;
+
+	@BeforeEach
+	void createPipeline() {
+		chunkPipeline = new ChunkPipeline();
+		ReflectionTestUtils.setField(chunkPipeline, "queueCapacity", 2);
+	}
+
+	@AfterEach
+	void stopPipeline() {
+		chunkPipeline.stopExecutor();
+	}
+
+	@Test
+	void resumeInProductPhaseImportsEveryRowOnce() {
+		Catalog full = new Catalog(null);
+		Result result = full.service.loadCsvData(new ImportJob(null, WriteMode.JPA, false));
+		assertEquals(14, result.getCreatedCategories());
+		assertEquals(14, result.getCreatedProducts());
+		assertEquals(ALL_CODES, sorted(full.productWrites));
+
+		// Interrupted after the second chunk of products
+		SavedCheckpoint checkpoint = full.checkpoints(ImportJob.Phase.PRODUCTS).get(1);
+		Catalog resumed = new Catalog(checkpoint);
+		Result resumedResult = resumed.service.loadCsvData(new ImportJob(null, WriteMode.JPA, true));
+
+		assertEquals("PRODUCTS", resumedResult.getResumedPhase());
+		assertEquals(checkpoint.recordNumber, resumedResult.getResumedAfterRecord());
+		assertTrue(resumed.categoryWrites.isEmpty());
+		List<Long> products = new ArrayList<Long>(checkpoint.productWrites);
+		products.addAll(resumed.productWrites);
+		assertEquals(ALL_CODES, sorted(products));
+		assertEquals(positionsAfter(full.checkpoints, checkpoint), positionsAfter(resumed.checkpoints, null));
+		verify(resumed.checkpointStore).delete(FILE);
+	}
+
+	@Test
+	void resumeInCategoryPhaseImportsEveryRowOnce() {
+		Catalog full = new Catalog(null);
+		full.service.loadCsvData(new ImportJob(null, WriteMode.JPA, false));
+
+		// Interrupted after the first chunk, which ends with the record spanning two lines
+		SavedCheckpoint checkpoint = full.checkpoints(ImportJob.Phase.CATEGORIES).get(0);
+		Catalog resumed = new Catalog(checkpoint);
+		Result resumedResult = resumed.service.loadCsvData(new ImportJob(null, WriteMode.JPA, true));
+
+		assertEquals("CATEGORIES", resumedResult.getResumedPhase());
+		List<Long> categories = new ArrayList<Long>(checkpoint.categoryWrites);
+		categories.addAll(resumed.categoryWrites);
+		assertEquals(ALL_CODES, sorted(categories));
+		assertTrue(checkpoint.productWrites.isEmpty());
+		assertEquals(ALL_CODES, sorted(resumed.productWrites));
+		assertEquals(positionsAfter(full.checkpoints, checkpoint), positionsAfter(resumed.checkpoints, null));
+	}
+
+	private static List<Long> sorted(List<Long> codes) {
+		return codes.stream().sorted().toList();
+	}
+
+	// Positions of the checkpoints saved after the given one, all for null
+	private static List<String> positionsAfter(List<SavedCheckpoint> checkpoints, SavedCheckpoint checkpoint) {
+		return checkpoints.subList(checkpoints.indexOf(checkpoint) + 1, checkpoints.size()).stream()
+				.map(SavedCheckpoint::position).toList();
+	}
+
+	/*
+	 * ProductService over mocks that behave like a database - written codes are
+	 * found by the validator & every checkpoint remembers the rows committed with
+	 * it. Chunks are written one after another by the write stage, so the lists
+	 * are in commit order.
+	 */
+	private class Catalog {
+		private final ProductService service = new ProductService();
+		private final CheckpointStore checkpointStore = mock(CheckpointStore.class);
+		private final Set<Long> categoryCodes = ConcurrentHashMap.newKeySet();
+		private final Set<Long> productCodes = ConcurrentHashMap.newKeySet();
+		private final List<Long> categoryWrites = new ArrayList<Long>();
+		private final List<Long> productWrites = new ArrayList<Long>();
+		private final List<SavedCheckpoint> checkpoints = new ArrayList<SavedCheckpoint>();
+
+		@SuppressWarnings("unchecked")
+		private Catalog(SavedCheckpoint resumeFrom) {
+			if (resumeFrom != null) {
+				categoryCodes.addAll(resumeFrom.categoryWrites);
+				productCodes.addAll(resumeFrom.productWrites);
+				when(checkpointStore.find(FILE)).thenReturn(new CheckpointStore.Checkpoint(resumeFrom.phase,
+						resumeFrom.recordNumber, resumeFrom.characterPosition));
+			}
+			doAnswer(invocation -> {
+				checkpoints.add(new SavedCheckpoint(invocation.getArgument(1), invocation.getArgument(2),
+						invocation.getArgument(3), categoryWrites, productWrites));
+				return null;
+			}).when(checkpointStore).save(eq(FILE), any(ImportJob.Phase.class), anyLong(), anyLong());
+
+			CategoryRepository categoryRepository = mock(CategoryRepository.class);
+			when(categoryRepository.saveAll(any())).thenAnswer(invocation -> {
+				for (Category category : (Collection<Category>) invocation.getArgument(0)) {
+					categoryWrites.add(category.getCategoryCode().longValue());
+					categoryCodes.add(category.getCategoryCode().longValue());
+				}
+				return null;
+			});
+			ProductRepository productRepository = mock(ProductRepository.class);
+			when(productRepository.saveAll(any())).thenAnswer(invocation -> {
+				for (Product product : (Collection<Product>) invocation.getArgument(0)) {
+					productWrites.add(product.getProductCode());
+					productCodes.add(product.getProductCode());
+				}
+				return null;
+			});
+			CodeValidator codeValidator = mock(CodeValidator.class);
+			when(codeValidator.findExistingCategoryCodes(anyCollection()))
+					.thenAnswer(invocation -> existing(invocation.getArgument(0), categoryCodes));
+			when(codeValidator.findExistingProductCodes(anyCollection()))
+					.thenAnswer(invocation -> existing(invocation.getArgument(0), productCodes));
+
+			ReflectionTestUtils.setField(service, "productRepository", productRepository);
+			ReflectionTestUtils.setField(service, "categoryRepository", categoryRepository);
+			ReflectionTestUtils.setField(service, "codeValidator", codeValidator);
+			ReflectionTestUtils.setField(service, "checkpointStore", checkpointStore);
+			ReflectionTestUtils.setField(service, "chunkPipeline", chunkPipeline);
+			ReflectionTestUtils.setField(service, "bulkWriter", mock(BulkWriter.class));
+			ReflectionTestUtils.setField(service, "catalogCache", mock(CatalogCache.class));
+			ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+			ReflectionTestUtils.setField(service, "transactionTemplate",
+					new TransactionTemplate(mock(PlatformTransactionManager.class)));
+			ReflectionTestUtils.setField(service, "chunkSize", 4);
+			ReflectionTestUtils.setField(service, "importFile", FILE);
+		}
+
+		private List<SavedCheckpoint> checkpoints(ImportJob.Phase phase) {
+			return checkpoints.stream().filter(checkpoint -> checkpoint.phase == phase).toList();
+		}
+
+		private LongHashSet existing(Collection<? extends Number> codes, Set<Long> database) {
+			LongHashSet existing = new LongHashSet();
+			for (Number code : codes)
+				if (database.contains(code.longValue()))
+					existing.add(code.longValue());
+			return existing;
+		}
+	}
+
+	// Checkpoint together with the rows committed up to it
+	private record SavedCheckpoint(ImportJob.Phase phase, long recordNumber, long characterPosition,
+			List<Long> categoryWrites, List<Long> productWrites) {
+
+		private SavedCheckpoint {
+			categoryWrites = List.copyOf(categoryWrites);
+			productWrites = List.copyOf(productWrites);
+		}
+
+		private String position() {
+			return phase + " record " + recordNumber + " at " + characterPosition;
+		}
+	}
+}
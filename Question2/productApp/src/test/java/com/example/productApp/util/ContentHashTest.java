@@ -0,0 +1,29 @@
+package com.example.productApp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+class ContentHashTest {
+
+	@Test
+	void emptyNameHashesToOffsetBasis() {
+		assertEquals(0xcbf29ce484222325L, ContentHash.of(""));
+	}
+
+	@Test
+	void equalContentHashesEqual() {
+		assertEquals(ContentHash.of("Books"), ContentHash.of(new String("Books")));
+		assertEquals(ContentHash.of("Pen", 12), ContentHash.of("Pen", 12));
+	}
+
+	@Test
+	void changedContentChangesHash() {
+		assertNotEquals(ContentHash.of("Books"), ContentHash.of("Book"));
+		assertNotEquals(ContentHash.of("Pen", 12), ContentHash.of("Pen", 13));
+		assertNotEquals(ContentHash.of("Pen", 12), ContentHash.of("Pencil", 12));
+		// Both bytes of a char are hashed
+		assertNotEquals(ContentHash.of("ā"), ContentHash.of("\u0001"));
+	}
+}
@@ -0,0 +1,46 @@
+package com.example.productApp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Date;
+
+import org.junit.jupiter.api.Test;
+
+class KeysetCursorTest {
+
+	@Test
+	void decodesWhatItEncodes() {
+		String token = new KeysetCursor("name", true, "Pens|Pencils", 17).encode();
+		KeysetCursor cursor = KeysetCursor.decode(token, "name", true, value -> value);
+		assertEquals("Pens|Pencils", cursor.getValue());
+		assertEquals(17, cursor.getId());
+	}
+
+	@Test
+	void restoresTypedValues() {
+		String token = new KeysetCursor("creationDate", false, Date.valueOf("2024-03-01"), 5).encode();
+		assertTrue(token.matches("[A-Za-z0-9_-]+"));
+		KeysetCursor cursor = KeysetCursor.decode(token, "creationDate", false, Date::valueOf);
+		assertEquals(Date.valueOf("2024-03-01"), cursor.getValue());
+	}
+
+	@Test
+	void rejectsCursorOfAnotherSort() {
+		String token = new KeysetCursor("name", false, "Pens", 1).encode();
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token, "name", true, value -> value));
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token, "id", false, Integer::valueOf));
+	}
+
+	@Test
+	void rejectsMalformedCursor() {
+		assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("%%%", "id", false, Integer::valueOf));
+		String noId = new KeysetCursor("productCode", false, 10L, 1).encode().substring(0, 8);
+		assertThrows(IllegalArgumentException.class,
+				() -> KeysetCursor.decode(noId, "productCode", false, Long::valueOf));
+		String badValue = new KeysetCursor("productCode", false, "ten", 1).encode();
+		assertThrows(IllegalArgumentException.class,
+				() -> KeysetCursor.decode(badValue, "productCode", false, Long::valueOf));
+	}
+}
@@ -0,0 +1,50 @@
+package com.example.productApp.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class LongHashSetTest {
+
+	@Test
+	void addReportsNewValuesOnly() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(43));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	void freeSlotMarkerIsAnOrdinaryValue() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(Long.MIN_VALUE));
+		assertTrue(set.add(Long.MIN_VALUE));
+		assertFalse(set.add(Long.MIN_VALUE));
+		assertTrue(set.contains(Long.MIN_VALUE));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	void matchesHashSetWhileGrowing() {
+		Random random = new Random(7);
+		LongHashSet set = new LongHashSet(4);
+		Set<Long> expected = new HashSet<Long>();
+		for (int i = 0; i < 100_000; i++) {
+			// Narrow range so that repeats occur, with sequential codes mixed in
+			long value = i % 3 == 0 ? i : random.nextInt(50_000) - 25_000L;
+			assertEquals(expected.add(value), set.add(value));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long value = -30_000; value < 110_000; value++)
+			assertEquals(expected.contains(value), set.contains(value));
+	}
+}